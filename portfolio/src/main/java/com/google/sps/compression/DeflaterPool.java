@@ -0,0 +1,63 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of raw (no zlib header) Deflaters. A Deflater holds native memory and is costly
+ * to create, so responses borrow one and hand it back instead of allocating one per request.
+ */
+final class DeflaterPool {
+
+  private final BlockingQueue<Deflater> idle;
+  private final int level;
+
+  /**
+   * @param capacity    the maximum number of idle Deflaters kept around
+   * @param level       the compression level (Deflater.BEST_SPEED .. Deflater.BEST_COMPRESSION)
+   */
+  DeflaterPool(int capacity, int level) {
+    this.idle = new ArrayBlockingQueue<>(capacity);
+    this.level = level;
+  }
+
+  /** Returns an idle Deflater, or a new one when the pool is empty */
+  Deflater borrow() {
+    Deflater deflater = idle.poll();
+    return deflater != null ? deflater : new Deflater(level, true);
+  }
+
+  /**
+   * Resets a Deflater and returns it to the pool (or frees it if the pool is full)
+   * @param deflater    a Deflater obtained from borrow
+   */
+  void release(Deflater deflater) {
+    deflater.reset();
+    if (!idle.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  /** Frees every idle Deflater */
+  void close() {
+    Deflater deflater;
+    while ((deflater = idle.poll()) != null) {
+      deflater.end();
+    }
+  }
+}
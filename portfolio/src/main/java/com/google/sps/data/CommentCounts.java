@@ -0,0 +1,29 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+
+/** Number of comments overall and per author email */
+public final class CommentCounts {
+
+  private final long total;
+  private final Map<String, Long> perAuthor;
+
+  public CommentCounts(long total, Map<String, Long> perAuthor) {
+    this.total = total;
+    this.perAuthor = perAuthor;
+  }
+}
@@ -0,0 +1,149 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR-style latency histogram (values in microseconds). Every power-of-two range is split into
+ * a fixed number of linear sub-buckets, so each recorded value keeps ~12% relative precision
+ * while the whole histogram stays a small, lock-free array of counters.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Values above 2^38 microseconds (~3 days) are clamped into the last bucket
+  private static final int MAX_EXPONENT = 38;
+  private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumMicros = new LongAdder();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  /**
+   * Records one observation
+   * @param nanos   the elapsed time in nanoseconds
+   */
+  public void recordNanos(long nanos) {
+    recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  /**
+   * Records one observation
+   * @param micros  the elapsed time in microseconds
+   */
+  public void recordMicros(long micros) {
+    long value = Math.max(0, Math.min(micros, MAX_VALUE));
+    buckets.incrementAndGet(bucketIndex(value));
+    count.increment();
+    sumMicros.add(value);
+
+    long max = maxMicros.get();
+    while (value > max && !maxMicros.compareAndSet(max, value)) {
+      max = maxMicros.get();
+    }
+  }
+
+  /** Returns a point-in-time copy of the histogram that can be queried without racing writers */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    return new Snapshot(counts, total, sumMicros.sum(), maxMicros.get());
+  }
+
+  /**
+   * Maps a value to its bucket: values below SUB_BUCKETS get their own bucket, larger values
+   * are grouped by their highest set bit and the next SUB_BUCKET_BITS bits below it.
+   * @param value   a non-negative value in microseconds
+   */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the largest value that falls into a bucket
+   * @param index   the bucket index (see bucketIndex)
+   */
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + (1L << shift) - 1;
+  }
+
+  /** Immutable view of a histogram at one point in time */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sumMicros;
+    private final long maxMicros;
+
+    private Snapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+      this.counts = counts;
+      this.count = count;
+      this.sumMicros = sumMicros;
+      this.maxMicros = maxMicros;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getSumMicros() {
+      return sumMicros;
+    }
+
+    public long getMaxMicros() {
+      return maxMicros;
+    }
+
+    /**
+     * Returns the value (in microseconds) at or below which the given share of observations fall
+     * @param quantile    a quantile between 0 and 1 (e.g. 0.99)
+     */
+    public long valueAtQuantile(double quantile) {
+      if (count == 0) {
+        return 0;
+      }
+      long target = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return Math.min(bucketUpperBound(i), maxMicros);
+        }
+      }
+      return maxMicros;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Process-wide registry of request/stage latency histograms and request counters */
+public final class Metrics {
+
+  public static final String REQUEST_DURATION = "portfolio_request_duration_seconds";
+  public static final String REQUESTS_TOTAL = "portfolio_requests_total";
+  public static final String STAGE_DURATION = "portfolio_stage_duration_seconds";
+  public static final String WRITES_SUPPRESSED = "portfolio_writes_suppressed_total";
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private static final Map<String, String> HELP = new TreeMap<>();
+  static {
+    HELP.put(REQUEST_DURATION, "End-to-end servlet latency.");
+    HELP.put(REQUESTS_TOTAL, "Servlet requests by response status.");
+    HELP.put(STAGE_DURATION, "Latency of individual stages within a servlet request.");
+    HELP.put(WRITES_SUPPRESSED, "Comment writes dropped as duplicates or rate limited.");
+  }
+
+  // metric name -> label string (e.g. servlet="data",stage="datastore") -> series
+  private static final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> histograms =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> counters =
+      new ConcurrentHashMap<>();
+
+  private Metrics() {}
+
+  /**
+   * Returns (creating if needed) the histogram for one labelled series
+   * @param name    the metric name
+   * @param labels  the Prometheus label list without braces, e.g. path="/data"
+   */
+  public static LatencyHistogram histogram(String name, String labels) {
+    return histograms
+        .computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(labels, key -> new LatencyHistogram());
+  }
+
+  /**
+   * Adds one to a labelled counter
+   * @param name    the metric name
+   * @param labels  the Prometheus label list without braces
+   */
+  public static void increment(String name, String labels) {
+    counters
+        .computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(labels, key -> new LongAdder())
+        .increment();
+  }
+
+  /**
+   * Returns the histogram for a stage of a servlet (Datastore RPC, translation, ...)
+   * @param servlet     short name of the servlet (e.g. "data")
+   * @param stage       name of the stage being timed (e.g. "datastore")
+   */
+  public static LatencyHistogram stage(String servlet, String stage) {
+    return histogram(STAGE_DURATION, "servlet=\"" + servlet + "\",stage=\"" + stage + "\"");
+  }
+
+  /**
+   * Starts timing a stage; the elapsed time is recorded when the timer is closed
+   * @param servlet     short name of the servlet (e.g. "data")
+   * @param stage       name of the stage being timed (e.g. "datastore")
+   */
+  public static StageTimer time(String servlet, String stage) {
+    return new StageTimer(stage(servlet, stage));
+  }
+
+  /**
+   * Writes every metric in the Prometheus text exposition format (histograms as summaries)
+   * @param out     the writer the metrics are written to
+   */
+  public static void writePrometheus(PrintWriter out) {
+    for (Map.Entry<String, ConcurrentMap<String, LongAdder>> family : sorted(counters).entrySet()) {
+      writeHeader(out, family.getKey(), "counter");
+      for (Map.Entry<String, LongAdder> series : sorted(family.getValue()).entrySet()) {
+        out.println(family.getKey() + "{" + series.getKey() + "} " + series.getValue().sum());
+      }
+    }
+
+    for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> family :
+        sorted(histograms).entrySet()) {
+      String name = family.getKey();
+      writeHeader(out, name, "summary");
+      for (Map.Entry<String, LatencyHistogram> series : sorted(family.getValue()).entrySet()) {
+        String labels = series.getKey();
+        LatencyHistogram.Snapshot snapshot = series.getValue().snapshot();
+        for (double quantile : QUANTILES) {
+          out.println(name + "{" + labels + ",quantile=\"" + quantile + "\"} "
+              + toSeconds(snapshot.valueAtQuantile(quantile)));
+        }
+        out.println(name + "_sum{" + labels + "} " + toSeconds(snapshot.getSumMicros()));
+        out.println(name + "_count{" + labels + "} " + snapshot.getCount());
+      }
+    }
+  }
+
+  private static void writeHeader(PrintWriter out, String name, String type) {
+    String help = HELP.get(name);
+    if (help != null) {
+      out.println("# HELP " + name + " " + help);
+    }
+    out.println("# TYPE " + name + " " + type);
+  }
+
+  private static <V> Map<String, V> sorted(Map<String, V> map) {
+    return new TreeMap<>(map);
+  }
+
+  private static double toSeconds(long micros) {
+    return micros / 1_000_000.0;
+  }
+}
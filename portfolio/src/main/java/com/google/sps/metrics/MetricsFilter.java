@@ -0,0 +1,62 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Records latency and a status counter for every request to the portfolio servlets */
+@WebFilter(urlPatterns = {"/data", "/auth", "/delete-comment", "/search", "/stats"})
+public class MetricsFilter implements Filter {
+
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  /**
+   * Times the rest of the filter chain (i.e. the servlet) and records the response status
+   * @param request     the request being served
+   * @param response    the response, read after the chain for its status code
+   * @param chain       the remaining filters and the target servlet
+   */
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+    String labels =
+        "path=\"" + httpRequest.getServletPath() + "\",method=\"" + httpRequest.getMethod() + "\"";
+
+    long start = System.nanoTime();
+    int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    try {
+      chain.doFilter(request, response);
+      status = httpResponse.getStatus();
+    } finally {
+      Metrics.histogram(Metrics.REQUEST_DURATION, labels).recordNanos(System.nanoTime() - start);
+      Metrics.increment(Metrics.REQUESTS_TOTAL, labels + ",status=\"" + status + "\"");
+    }
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -0,0 +1,32 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+/** Times one stage of a request; meant to be used with try-with-resources */
+public final class StageTimer implements AutoCloseable {
+
+  private final LatencyHistogram histogram;
+  private final long start = System.nanoTime();
+
+  StageTimer(LatencyHistogram histogram) {
+    this.histogram = histogram;
+  }
+
+  /** Records the time elapsed since the timer was started */
+  @Override
+  public void close() {
+    histogram.recordNanos(System.nanoTime() - start);
+  }
+}
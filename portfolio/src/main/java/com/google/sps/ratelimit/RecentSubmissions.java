@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers recent submissions so that an exact duplicate arriving within a short window (a
+ * double click, a client retry loop) collapses into the first one instead of being written
+ * again.
+ */
+public final class RecentSubmissions {
+
+  private final long windowNanos;
+  private final LongSupplier nanoClock;
+  private final ConcurrentMap<String, Long> claimedAt = new ConcurrentHashMap<>();
+  private final AtomicLong nextEviction;
+
+  /**
+   * @param window  how long a submission suppresses identical ones
+   * @param unit    unit of window
+   */
+  public RecentSubmissions(long window, TimeUnit unit) {
+    this(unit.toNanos(window), System::nanoTime);
+  }
+
+  RecentSubmissions(long windowNanos, LongSupplier nanoClock) {
+    this.windowNanos = windowNanos;
+    this.nanoClock = nanoClock;
+    this.nextEviction = new AtomicLong(nanoClock.getAsLong() + windowNanos);
+  }
+
+  /**
+   * Claims a submission; only the first caller within the window gets true
+   * @param key     identifies the submission (author and full content)
+   */
+  public boolean claim(String key) {
+    long now = nanoClock.getAsLong();
+    evictExpired(now);
+
+    boolean[] claimed = {false};
+    claimedAt.compute(key, (k, previous) -> {
+      if (previous != null && now - previous < windowNanos) {
+        return previous;
+      }
+      claimed[0] = true;
+      return now;
+    });
+    return claimed[0];
+  }
+
+  /**
+   * Gives a claim back, e.g. when the write it guarded was rejected or failed
+   * @param key     the key passed to claim
+   */
+  public void release(String key) {
+    claimedAt.remove(key);
+  }
+
+  /** Returns the number of submissions currently remembered */
+  int size() {
+    return claimedAt.size();
+  }
+
+  private void evictExpired(long now) {
+    long due = nextEviction.get();
+    if (now - due < 0 || !nextEviction.compareAndSet(due, now + windowNanos)) {
+      return;
+    }
+    claimedAt.values().removeIf(claimed -> now - claimed >= windowNanos);
+  }
+}
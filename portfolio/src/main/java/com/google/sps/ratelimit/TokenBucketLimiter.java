@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free per-key token bucket. Each bucket is a single AtomicLong holding the time at which
+ * it will be completely refilled (the GCRA formulation of a token bucket), so acquiring a token
+ * is one CAS and buckets that have refilled can be evicted without losing any state.
+ */
+public final class TokenBucketLimiter {
+
+  private final long capacity;
+  private final long nanosPerToken;
+  private final LongSupplier nanoClock;
+  private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+  private final AtomicLong nextEviction;
+
+  /**
+   * @param capacity        the burst size (tokens available to a new or idle key)
+   * @param refillPeriod    time it takes to earn back one token
+   * @param unit            unit of refillPeriod
+   */
+  public TokenBucketLimiter(long capacity, long refillPeriod, TimeUnit unit) {
+    this(capacity, unit.toNanos(refillPeriod), System::nanoTime);
+  }
+
+  TokenBucketLimiter(long capacity, long nanosPerToken, LongSupplier nanoClock) {
+    this.capacity = capacity;
+    this.nanosPerToken = nanosPerToken;
+    this.nanoClock = nanoClock;
+    this.nextEviction = new AtomicLong(nanoClock.getAsLong() + evictionPeriod());
+  }
+
+  /**
+   * Takes one token from the key's bucket
+   * @param key     the rate-limited identity (e.g. a user's email)
+   * @return        0 if a token was taken, otherwise nanoseconds until one becomes available
+   */
+  public long tryAcquire(String key) {
+    long now = nanoClock.getAsLong();
+    evictIdleBuckets(now);
+
+    AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    while (true) {
+      long refilledAt = bucket.get();
+      long next = Math.max(refilledAt, now) + nanosPerToken;
+      // The bucket is empty once taking a token would push it more than capacity tokens behind
+      long overdraft = next - now - capacity * nanosPerToken;
+      if (overdraft > 0) {
+        return overdraft;
+      }
+      if (bucket.compareAndSet(refilledAt, next)) {
+        return 0;
+      }
+    }
+  }
+
+  /** Returns the number of keys that currently have a bucket */
+  int size() {
+    return buckets.size();
+  }
+
+  /**
+   * Drops buckets that are full again; at most one caller sweeps per eviction period
+   * @param now     the current clock reading
+   */
+  private void evictIdleBuckets(long now) {
+    long due = nextEviction.get();
+    if (now - due < 0 || !nextEviction.compareAndSet(due, now + evictionPeriod())) {
+      return;
+    }
+    buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+  }
+
+  private long evictionPeriod() {
+    // A bucket refills completely in capacity * nanosPerToken, never sweep more often than that
+    return Math.max(capacity * nanosPerToken, TimeUnit.SECONDS.toNanos(1));
+  }
+}
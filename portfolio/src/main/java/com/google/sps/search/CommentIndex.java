@@ -0,0 +1,238 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Query;
+import com.google.sps.data.Comment;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over Comment entities (token -> comment id -> term frequency).
+ * Loaded from Datastore when the instance starts and kept up to date by the servlets that
+ * add and delete comments, so a search is a posting-list lookup instead of a full scan.
+ */
+public final class CommentIndex {
+
+  private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private static volatile CommentIndex instance;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+  private final Map<Long, IndexedComment> comments = new HashMap<>();
+
+  CommentIndex() {}
+
+  /**
+   * Builds the shared index from every Comment entity (once); called at startup by
+   * CommentIndexLoader so no request pays for the scan
+   */
+  public static synchronized CommentIndex load() {
+    if (instance == null) {
+      CommentIndex index = new CommentIndex();
+      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+      for (Entity entity : datastore.prepare(new Query("Comment")).asIterable()) {
+        index.add(entity);
+      }
+      instance = index;
+    }
+    return instance;
+  }
+
+  /** Returns the shared index, building it only if loading at startup failed */
+  public static CommentIndex getInstance() {
+    CommentIndex index = instance;
+    return index != null ? index : load();
+  }
+
+  /**
+   * Adds (or replaces) a comment in the index
+   * @param entity  a Comment entity that has already been stored
+   */
+  public void add(Entity entity) {
+    IndexedComment comment = new IndexedComment(
+        entity.getKey().getId(),
+        (String) entity.getProperty("name"),
+        (String) entity.getProperty("comment"),
+        (long) entity.getProperty("timestamp"),
+        ((Number) entity.getProperty("length")).longValue(),
+        (String) entity.getProperty("email"));
+
+    Map<String, Integer> frequencies = new HashMap<>();
+    for (String token : tokenize(comment.name + " " + comment.comment)) {
+      frequencies.merge(token, 1, Integer::sum);
+    }
+
+    lock.writeLock().lock();
+    try {
+      removeLocked(comment.id);
+      comments.put(comment.id, comment);
+      for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+        postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>())
+            .put(comment.id, entry.getValue());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a comment from the index (no-op if it is not indexed)
+   * @param id  the id of the deleted comment
+   */
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes every comment from the index */
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      postings.clear();
+      comments.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Finds comments containing any query token, ranked by TF-IDF score (newest first on ties)
+   * @param queryText   free text typed by the user
+   * @param page        zero-based page number
+   * @param pageSize    number of results per page
+   */
+  public SearchResults search(String queryText, int page, int pageSize) {
+    List<String> tokens = tokenize(queryText);
+    List<ScoredComment> matches = new ArrayList<>();
+
+    lock.readLock().lock();
+    try {
+      Map<Long, Double> scores = new HashMap<>();
+      int total = comments.size();
+      for (String token : tokens) {
+        Map<Long, Integer> posting = postings.get(token);
+        if (posting == null) {
+          continue;
+        }
+        double idf = Math.log(1 + (double) total / posting.size());
+        for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+          scores.merge(entry.getKey(), entry.getValue() * idf, Double::sum);
+        }
+      }
+      for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+        matches.add(new ScoredComment(comments.get(entry.getKey()), entry.getValue()));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    matches.sort((a, b) -> {
+      int byScore = Double.compare(b.score, a.score);
+      return byScore != 0 ? byScore : Long.compare(b.comment.timestamp, a.comment.timestamp);
+    });
+
+    List<Comment> results = new ArrayList<>();
+    int from = (int) Math.min((long) page * pageSize, matches.size());
+    int to = Math.min(from + pageSize, matches.size());
+    for (ScoredComment match : matches.subList(from, to)) {
+      results.add(match.comment.toComment());
+    }
+    return new SearchResults(matches.size(), page, pageSize, results);
+  }
+
+  /**
+   * Splits text into lower-case letter/digit tokens
+   * @param text    the text to tokenize (may be null)
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+    for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  private void removeLocked(long id) {
+    IndexedComment old = comments.remove(id);
+    if (old == null) {
+      return;
+    }
+    for (String token : tokenize(old.name + " " + old.comment)) {
+      Map<Long, Integer> posting = postings.get(token);
+      if (posting != null) {
+        posting.remove(id);
+        if (posting.isEmpty()) {
+          postings.remove(token);
+        }
+      }
+    }
+  }
+
+  /** The fields of a Comment entity that search results are rendered from */
+  private static final class IndexedComment {
+
+    private final long id;
+    private final String name;
+    private final String comment;
+    private final long timestamp;
+    private final long length;
+    private final String email;
+
+    IndexedComment(long id, String name, String comment, long timestamp, long length,
+        String email) {
+      this.id = id;
+      this.name = name;
+      this.comment = comment;
+      this.timestamp = timestamp;
+      this.length = length;
+      this.email = email;
+    }
+
+    Comment toComment() {
+      return new Comment(id, name, comment, timestamp, length, email);
+    }
+  }
+
+  private static final class ScoredComment {
+
+    private final IndexedComment comment;
+    private final double score;
+
+    ScoredComment(IndexedComment comment, double score) {
+      this.comment = comment;
+      this.score = score;
+    }
+  }
+}
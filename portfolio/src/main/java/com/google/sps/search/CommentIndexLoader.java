@@ -0,0 +1,40 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Builds the comment search index when the instance starts (on App Engine, during the loading
+ * or warmup request), so the first search or comment write does not scan the Comment kind.
+ */
+@WebListener
+public class CommentIndexLoader implements ServletContextListener {
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    try {
+      CommentIndex.load();
+    } catch (RuntimeException e) {
+      // Starting without the index is better than not starting; the first use builds it
+      event.getServletContext().log("Could not build the comment index", e);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {}
+}
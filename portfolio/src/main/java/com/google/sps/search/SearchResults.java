@@ -0,0 +1,34 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import com.google.sps.data.Comment;
+import java.util.List;
+
+/** One page of ranked comment search results */
+public final class SearchResults {
+
+  private final int total;
+  private final int page;
+  private final int pageSize;
+  private final List<Comment> results;
+
+  public SearchResults(int total, int page, int pageSize, List<Comment> results) {
+    this.total = total;
+    this.page = page;
+    this.pageSize = pageSize;
+    this.results = results;
+  }
+}
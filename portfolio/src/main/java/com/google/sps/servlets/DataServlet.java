@@ -28,6 +28,13 @@ import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.sps.data.Comment;
+import com.google.sps.metrics.Metrics;
+import com.google.sps.metrics.StageTimer;
+import com.google.sps.ratelimit.RecentSubmissions;
+import com.google.sps.ratelimit.TokenBucketLimiter;
+import com.google.sps.search.CommentIndex;
+import com.google.sps.stats.CommentStats;
+import com.google.sps.stats.CommentVersion;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -35,6 +42,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import com.google.gson.Gson;
 
 /** Servlet that deals with comments (POST and GET requests) */
@@ -44,6 +52,17 @@ public class DataServlet extends HttpServlet {
   // Some libraries can only be run when deployed
   private final boolean dev = true;
 
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
+  // Per-user comment write limit (per instance), configurable through system properties
+  private final TokenBucketLimiter writeLimiter = new TokenBucketLimiter(
+      Long.getLong("portfolio.writes.burst", 10),
+      Long.getLong("portfolio.writes.refillSeconds", 6),
+      TimeUnit.SECONDS);
+
+  // Identical comments re-submitted within this window are only written once
+  private final RecentSubmissions recentSubmissions = new RecentSubmissions(10, TimeUnit.SECONDS);
+
   /**
    * Get comments from Database (correct number, sorting, & translation using query strings)
    * @param request     contains info on number of comments, sorting, & translation
@@ -58,6 +77,17 @@ public class DataServlet extends HttpServlet {
         out.println("<h1>Restricted Action!</h1>");
         return;
     }
+
+    // Answer unchanged polls with 304 before touching the Comment kind
+    CommentVersion.Stamp stamp = CommentVersion.current();
+    String etag = "\"" + stamp.getVersion() + "-" + stamp.getModified() + "\"";
+    response.setHeader("ETag", etag);
+    response.setDateHeader("Last-Modified", stamp.getModified());
+    response.setHeader("Cache-Control", "private, no-cache");
+    if (isNotModified(request, etag, stamp.getModified())) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+    }
     
     int numComments = Integer.parseInt(request.getParameter("count"));
     String sortingOrder = request.getParameter("sort");
@@ -65,12 +95,19 @@ public class DataServlet extends HttpServlet {
     Query query = prepareQuery(sortingOrder);
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    List<Entity> results = datastore.prepare(query).asList(FetchOptions.Builder.withLimit(numComments));
+    List<Entity> results;
+    try (StageTimer timer = Metrics.time("data", "datastore")) {
+        results = datastore.prepare(query).asList(FetchOptions.Builder.withLimit(numComments));
+        // Force the (lazily fetched) results so the RPC is counted in this stage
+        results.size();
+    }
     
     // Get Translation instance for future usage
-    Translate translate = TranslateOptions.getDefaultInstance().getService();
+    Translate translate = dev ? null : TranslateOptions.getDefaultInstance().getService();
 
-    // Populate array with data from the DB
+    // Populate array with data from the DB (translation time is recorded as its own stage)
+    long mappingStart = System.nanoTime();
+    long translationNanos = 0;
     List<Comment> comments = new ArrayList<>();
     for (Entity entity : results) {
         String email = (String) entity.getProperty("email");
@@ -81,14 +118,25 @@ public class DataServlet extends HttpServlet {
         long comment_length = (long) entity.getProperty("length");
 
         // Translate the comment content
-        comment_content = dev ? comment_content : translate(translate, comment_content, langCode);
+        if (!dev) {
+            long translationStart = System.nanoTime();
+            comment_content = translate(translate, comment_content, langCode);
+            long elapsed = System.nanoTime() - translationStart;
+            Metrics.stage("data", "translation").recordNanos(elapsed);
+            translationNanos += elapsed;
+        }
 
         Comment comment = new Comment(id, name, comment_content, timestamp, comment_length, email);
         comments.add(comment);
     }
+    Metrics.stage("data", "entity_mapping")
+        .recordNanos(System.nanoTime() - mappingStart - translationNanos);
 
     // Convert comments into readable data type for client
-    String json = convertToJson(comments); 
+    String json;
+    try (StageTimer timer = Metrics.time("data", "json_encoding")) {
+        json = convertToJson(comments);
+    }
     
     // Send response to client
     response.setContentType("application/json");
@@ -115,6 +163,24 @@ public class DataServlet extends HttpServlet {
       String name = request.getParameter("comment_name");
       String comment =  request.getParameter("comment_content");
 
+      // Collapse exact duplicates (double submits, client retries) into the first write
+      String submission = email + "\u0000" + name + "\u0000" + comment;
+      if (!recentSubmissions.claim(submission)) {
+          Metrics.increment(Metrics.WRITES_SUPPRESSED, "reason=\"duplicate\"");
+          response.sendRedirect("/index.html#Comments");
+          return;
+      }
+
+      long waitNanos = writeLimiter.tryAcquire(email);
+      if (waitNanos > 0) {
+          recentSubmissions.release(submission);
+          Metrics.increment(Metrics.WRITES_SUPPRESSED, "reason=\"rate_limited\"");
+          long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos));
+          response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+          response.sendError(SC_TOO_MANY_REQUESTS, "Too many comments, please slow down");
+          return;
+      }
+
       // Add to Datastore
       Entity commentEntity = new Entity("Comment");
       commentEntity.setProperty("email", email);
@@ -124,11 +190,56 @@ public class DataServlet extends HttpServlet {
       commentEntity.setProperty("length", comment.length());
 
       DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-      datastore.put(commentEntity);
+      try (StageTimer timer = Metrics.time("data", "datastore_put")) {
+          datastore.put(commentEntity);
+      } catch (RuntimeException e) {
+          // Let the client retry a write that did not happen
+          recentSubmissions.release(submission);
+          throw e;
+      }
+      try {
+          CommentIndex.getInstance().add(commentEntity);
+          CommentStats.commentAdded(email);
+      } finally {
+          // The comment is stored, so cached listings are stale even if the bookkeeping failed
+          CommentVersion.bump();
+      }
 
       response.sendRedirect("/index.html#Comments");
   }
 
+  /**
+   * Checks the client's validators (If-None-Match takes precedence over If-Modified-Since)
+   * @param request         carries the conditional headers from the client's last response
+   * @param etag            the current entity tag of the comment listing
+   * @param lastModified    the time of the last comment change in milliseconds
+   */
+  private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String candidate : ifNoneMatch.split(",")) {
+        candidate = candidate.trim();
+        if (candidate.startsWith("W/")) {
+          candidate = candidate.substring(2);
+        }
+        if (candidate.equals("*") || candidate.equals(etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    long ifModifiedSince;
+    try {
+      ifModifiedSince = request.getDateHeader("If-Modified-Since");
+    } catch (IllegalArgumentException e) {
+      // Unparseable date: treat the request as unconditional
+      return false;
+    }
+    // HTTP dates only have second precision
+    return ifModifiedSince > 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
   /**
    * Converts the List of Comment objects to JSON using Gson Java library
    * @param arr an array of comments that will be converted to JSON
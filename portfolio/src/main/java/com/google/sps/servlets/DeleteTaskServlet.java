@@ -22,6 +22,12 @@ import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.sps.metrics.Metrics;
+import com.google.sps.metrics.StageTimer;
+import com.google.sps.search.CommentIndex;
+import com.google.sps.stats.CommentStats;
+import com.google.sps.stats.CommentVersion;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -47,16 +53,43 @@ public class DeleteTaskServlet extends HttpServlet {
     // If we have the id of a particular comment
     if (id != -1) {
         Key commentEntityKey = KeyFactory.createKey("Comment", id);
-        datastore.delete(commentEntityKey);
+        // Look up the author first so the per-author counter can be decremented
+        String email;
+        try (StageTimer timer = Metrics.time("delete", "datastore_get")) {
+            email = (String) datastore.get(commentEntityKey).getProperty("email");
+        } catch (EntityNotFoundException e) {
+            // Already deleted, nothing to update
+            return;
+        }
+        try (StageTimer timer = Metrics.time("delete", "datastore_delete")) {
+            datastore.delete(commentEntityKey);
+        }
+        try {
+            CommentIndex.getInstance().remove(id);
+            CommentStats.commentDeleted(email);
+        } finally {
+            // The comment is gone, so cached listings are stale even if the bookkeeping failed
+            CommentVersion.bump();
+        }
     } else { 
         // Will delete all comments
         Query query = new Query("Comment");
-        PreparedQuery comments = datastore.prepare(query);
         List<Key> toDelete = new ArrayList<>();
-        for (Entity entity : comments.asIterable()) {
-            toDelete.add(entity.getKey());
+        try (StageTimer timer = Metrics.time("delete", "datastore_query")) {
+            PreparedQuery comments = datastore.prepare(query);
+            for (Entity entity : comments.asIterable()) {
+                toDelete.add(entity.getKey());
+            }
+        }
+        try (StageTimer timer = Metrics.time("delete", "datastore_delete")) {
+            datastore.delete(toDelete);
+        }
+        try {
+            CommentIndex.getInstance().clear();
+            CommentStats.allCommentsDeleted();
+        } finally {
+            CommentVersion.bump();
         }
-        datastore.delete(toDelete);
     }
   }
 }
\ No newline at end of file
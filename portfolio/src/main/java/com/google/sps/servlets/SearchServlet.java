@@ -0,0 +1,86 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.Gson;
+import com.google.sps.metrics.Metrics;
+import com.google.sps.metrics.StageTimer;
+import com.google.sps.search.CommentIndex;
+import com.google.sps.search.SearchResults;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that answers full-text comment searches from the in-memory CommentIndex */
+@WebServlet("/search")
+public class SearchServlet extends HttpServlet {
+
+  private static final int DEFAULT_PAGE_SIZE = 10;
+  private static final int MAX_PAGE_SIZE = 100;
+
+  /**
+   * Returns one page of comments matching the query, best matches first
+   * @param request     contains the query (q), the zero-based page and the page size (count)
+   * @param response    returns the total number of matches and the requested page as JSON
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Same restriction as listing comments through /data
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn()) {
+      PrintWriter out = response.getWriter();
+      out.println("<h1>Restricted Action!</h1>");
+      return;
+    }
+
+    String queryText = request.getParameter("q");
+    int page = Math.max(0, parseInt(request.getParameter("page"), 0));
+    int pageSize = parseInt(request.getParameter("count"), DEFAULT_PAGE_SIZE);
+    pageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+
+    SearchResults results;
+    try (StageTimer timer = Metrics.time("search", "index_lookup")) {
+      results = CommentIndex.getInstance().search(queryText, page, pageSize);
+    }
+
+    String json;
+    try (StageTimer timer = Metrics.time("search", "json_encoding")) {
+      json = new Gson().toJson(results);
+    }
+    response.setContentType("application/json");
+    response.getWriter().println(json);
+  }
+
+  /**
+   * Parses an optional integer query parameter
+   * @param value           the raw parameter (may be null)
+   * @param defaultValue    returned when the parameter is missing or malformed
+   */
+  private int parseInt(String value, int defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.Gson;
+import com.google.sps.data.CommentCounts;
+import com.google.sps.metrics.Metrics;
+import com.google.sps.metrics.StageTimer;
+import com.google.sps.stats.CommentStats;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that returns comment totals and per-author counts without scanning comments */
+@WebServlet("/stats")
+public class StatsServlet extends HttpServlet {
+
+  /**
+   * Returns the denormalized comment counters as JSON
+   * @param request     not used (do not need any info from client)
+   * @param response    returns the total and per-author comment counts
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn()) {
+      PrintWriter out = response.getWriter();
+      out.println("<h1>Restricted Action!</h1>");
+      return;
+    }
+
+    CommentCounts counts;
+    try (StageTimer timer = Metrics.time("stats", "datastore")) {
+      counts = CommentStats.getCounts();
+    }
+
+    response.setContentType("application/json");
+    response.getWriter().println(new Gson().toJson(counts));
+  }
+}
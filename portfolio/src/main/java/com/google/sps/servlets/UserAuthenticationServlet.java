@@ -27,6 +27,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import com.google.sps.data.User;
+import com.google.sps.metrics.Metrics;
+import com.google.sps.metrics.StageTimer;
 import com.google.gson.Gson;
 
 
@@ -67,7 +69,10 @@ public class UserAuthenticationServlet extends HttpServlet {
     }
     User currentUser = new User(loggedIn, loginURL, logoutURL, email, nickname);
 
-    String json = convertToJson(currentUser); 
+    String json;
+    try (StageTimer timer = Metrics.time("auth", "json_encoding")) {
+      json = convertToJson(currentUser);
+    }
     response.getWriter().println(json);
   }
 
@@ -92,7 +97,9 @@ public class UserAuthenticationServlet extends HttpServlet {
     entity.setProperty("id", id);
     entity.setProperty("nickname", nickname);
     // The put() function automatically inserts new data or updates existing data based on ID
-    datastore.put(entity);
+    try (StageTimer timer = Metrics.time("auth", "datastore_put")) {
+      datastore.put(entity);
+    }
 
     response.sendRedirect("/#Comments");
   }
@@ -117,7 +124,10 @@ public class UserAuthenticationServlet extends HttpServlet {
         new Query("UserInfo")
             .setFilter(new Query.FilterPredicate("id", Query.FilterOperator.EQUAL, id));
     PreparedQuery results = datastore.prepare(query);
-    Entity entity = results.asSingleEntity();
+    Entity entity;
+    try (StageTimer timer = Metrics.time("auth", "datastore")) {
+      entity = results.asSingleEntity();
+    }
     if (entity == null) {
       return null;
     }
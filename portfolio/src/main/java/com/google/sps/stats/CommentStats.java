@@ -0,0 +1,120 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.stats;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.sps.data.CommentCounts;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Denormalized comment totals (overall and per author email), maintained on every comment
+ * write/delete so readers never have to scan the Comment kind.
+ */
+public final class CommentStats {
+
+  private static final String TOTAL = "comments";
+  private static final String AUTHOR_PREFIX = "comments_by:";
+  // Written once the counters have been rebuilt from the existing Comment entities
+  private static final Key BACKFILL_MARKER = KeyFactory.createKey("CounterState", TOTAL);
+  // Readers may see counts this stale when another instance wrote in the meantime
+  private static final long CACHE_MILLIS = 5000;
+
+  private static volatile boolean backfilled = false;
+  private static volatile CommentCounts cachedCounts;
+  private static volatile long cachedAt;
+
+  private CommentStats() {}
+
+  /**
+   * Counts a newly stored comment
+   * @param email   the author of the comment
+   */
+  public static void commentAdded(String email) {
+    ShardedCounter.add(TOTAL, 1);
+    ShardedCounter.add(AUTHOR_PREFIX + email, 1);
+    cachedCounts = null;
+  }
+
+  /**
+   * Uncounts a deleted comment
+   * @param email   the author of the comment
+   */
+  public static void commentDeleted(String email) {
+    ShardedCounter.add(TOTAL, -1);
+    ShardedCounter.add(AUTHOR_PREFIX + email, -1);
+    cachedCounts = null;
+  }
+
+  /** Resets every count after all comments have been deleted */
+  public static void allCommentsDeleted() {
+    ShardedCounter.deleteAll();
+    cachedCounts = null;
+  }
+
+  /** Returns the comment total and per-author counts (cached for a few seconds) */
+  public static CommentCounts getCounts() {
+    CommentCounts counts = cachedCounts;
+    if (counts != null && System.currentTimeMillis() - cachedAt < CACHE_MILLIS) {
+      return counts;
+    }
+
+    ensureBackfilled();
+    counts = new CommentCounts(
+        ShardedCounter.get(TOTAL), ShardedCounter.getAllWithPrefix(AUTHOR_PREFIX));
+    cachedAt = System.currentTimeMillis();
+    cachedCounts = counts;
+    return counts;
+  }
+
+  /**
+   * Rebuilds the counters from the Comment kind once, for comments stored before the counters
+   * existed. This is the only full scan and it only runs until the marker entity is written.
+   */
+  private static synchronized void ensureBackfilled() {
+    if (backfilled) {
+      return;
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      datastore.get(BACKFILL_MARKER);
+      backfilled = true;
+      return;
+    } catch (EntityNotFoundException e) {
+      // First read ever: fall through and count the existing comments
+    }
+
+    long total = 0;
+    Map<String, Long> perAuthor = new HashMap<>();
+    for (Entity entity : datastore.prepare(new Query("Comment")).asIterable()) {
+      total++;
+      perAuthor.merge((String) entity.getProperty("email"), 1L, Long::sum);
+    }
+    ShardedCounter.deleteAll();
+    ShardedCounter.set(TOTAL, total);
+    for (Map.Entry<String, Long> entry : perAuthor.entrySet()) {
+      ShardedCounter.set(AUTHOR_PREFIX + entry.getKey(), entry.getValue());
+    }
+
+    datastore.put(new Entity(BACKFILL_MARKER));
+    backfilled = true;
+  }
+}
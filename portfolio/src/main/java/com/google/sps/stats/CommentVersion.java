@@ -0,0 +1,144 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.stats;
+
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version stamp of the Comment kind, bumped on every comment write or delete. Readers use it to
+ * answer conditional GETs without querying comments. Like ShardedCounter, the version is split
+ * over a few shard entities so bursts of writes rarely contend; a read batch-gets the shards by
+ * key and is cached briefly per instance (writes on this instance drop the cache).
+ */
+public final class CommentVersion {
+
+  private static final String KIND = "CommentVersion";
+  private static final int NUM_SHARDS = 10;
+  private static final List<Key> SHARD_KEYS = shardKeys();
+  // How stale a reader on another instance may be after a write
+  private static final long CACHE_MILLIS = 1000;
+  private static final int MAX_RETRIES = 3;
+
+  private static volatile Stamp cachedStamp;
+  private static volatile long cachedAt;
+
+  private CommentVersion() {}
+
+  /** A version number together with the time of the change that produced it */
+  public static final class Stamp {
+
+    private final long version;
+    private final long modified;
+
+    Stamp(long version, long modified) {
+      this.version = version;
+      this.modified = modified;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    /** Returns the time of the last change in milliseconds since the epoch */
+    public long getModified() {
+      return modified;
+    }
+  }
+
+  /** Returns the current stamp, creating it on first use */
+  public static Stamp current() {
+    Stamp stamp = cachedStamp;
+    if (stamp != null && System.currentTimeMillis() - cachedAt < CACHE_MILLIS) {
+      return stamp;
+    }
+    // A batch get by key is strongly consistent, so reading needs no transaction
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> shards = new ArrayList<>(datastore.get(SHARD_KEYS).values());
+    if (shards.isEmpty()) {
+      bump();
+      shards = new ArrayList<>(datastore.get(SHARD_KEYS).values());
+    }
+    long version = 0;
+    long modified = 0;
+    for (Entity shard : shards) {
+      version += (long) shard.getProperty("version");
+      modified = Math.max(modified, (long) shard.getProperty("modified"));
+    }
+    stamp = new Stamp(version, modified);
+    cachedStamp = stamp;
+    cachedAt = System.currentTimeMillis();
+    return stamp;
+  }
+
+  /**
+   * Records a change to the Comment kind on a randomly chosen shard. Best effort: the change is
+   * already stored when this runs, so if every attempt hits contention the bump is dropped
+   * rather than failing the request, and the stamp moves on with the next change.
+   */
+  public static void bump() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+      // A different shard on each attempt, rather than retrying the contended one
+      Key key = SHARD_KEYS.get(ThreadLocalRandom.current().nextInt(NUM_SHARDS));
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity shard;
+        try {
+          shard = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          shard = new Entity(key);
+          shard.setProperty("version", 0L);
+          shard.setProperty("modified", 0L);
+        }
+        shard.setProperty("version", (long) shard.getProperty("version") + 1);
+        shard.setProperty("modified",
+            Math.max(System.currentTimeMillis(), (long) shard.getProperty("modified")));
+        datastore.put(transaction, shard);
+        transaction.commit();
+        break;
+      } catch (ConcurrentModificationException | DatastoreFailureException
+          | DatastoreTimeoutException e) {
+        // Try another shard
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    // Readers on this instance see the change on their next request
+    cachedStamp = null;
+  }
+
+  private static List<Key> shardKeys() {
+    List<Key> keys = new ArrayList<>(NUM_SHARDS);
+    for (int i = 0; i < NUM_SHARDS; i++) {
+      keys.add(KeyFactory.createKey(KIND, "comments#" + i));
+    }
+    return Collections.unmodifiableList(keys);
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.stats;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Datastore counter split over several shard entities, so concurrent increments rarely touch
+ * the same entity group and a read only sums a handful of small entities.
+ */
+public final class ShardedCounter {
+
+  static final String KIND = "CounterShard";
+  private static final int NUM_SHARDS = 10;
+  private static final int MAX_RETRIES = 3;
+
+  private ShardedCounter() {}
+
+  /**
+   * Adds delta to one randomly chosen shard of a counter
+   * @param name    the counter name
+   * @param delta   the amount to add (negative to decrement)
+   */
+  public static void add(String name, long delta) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Key shardKey = KeyFactory.createKey(
+        KIND, name + "#" + ThreadLocalRandom.current().nextInt(NUM_SHARDS));
+
+    for (int attempt = 0; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity shard;
+        try {
+          shard = datastore.get(transaction, shardKey);
+        } catch (EntityNotFoundException e) {
+          shard = new Entity(shardKey);
+          shard.setProperty("counter", name);
+          shard.setProperty("count", 0L);
+        }
+        shard.setProperty("count", (long) shard.getProperty("count") + delta);
+        datastore.put(transaction, shard);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt + 1 >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Overwrites a counter with an absolute value (used when rebuilding counts)
+   * @param name    the counter name
+   * @param value   the new total
+   */
+  public static void set(String name, long value) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> shards = new ArrayList<>(NUM_SHARDS);
+    for (int i = 0; i < NUM_SHARDS; i++) {
+      Entity shard = new Entity(KIND, name + "#" + i);
+      shard.setProperty("counter", name);
+      shard.setProperty("count", i == 0 ? value : 0L);
+      shards.add(shard);
+    }
+    datastore.put(shards);
+  }
+
+  /**
+   * Returns the sum of all shards of a counter
+   * @param name    the counter name
+   */
+  public static long get(String name) {
+    // The shard keys are known, and a batch get by key is strongly consistent
+    List<Key> keys = new ArrayList<>(NUM_SHARDS);
+    for (int i = 0; i < NUM_SHARDS; i++) {
+      keys.add(KeyFactory.createKey(KIND, name + "#" + i));
+    }
+    long total = 0;
+    for (Entity shard : DatastoreServiceFactory.getDatastoreService().get(keys).values()) {
+      total += (long) shard.getProperty("count");
+    }
+    return total;
+  }
+
+  /**
+   * Returns the totals of every counter whose name starts with prefix, keyed by the rest of
+   * the name. Costs one query over (matching counters x shards) entities.
+   * @param prefix  the common counter name prefix
+   */
+  public static Map<String, Long> getAllWithPrefix(String prefix) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    // Every name that starts with prefix sorts between prefix and prefix + U+FFFF
+    Query query = new Query(KIND).setFilter(Query.CompositeFilterOperator.and(
+        new Query.FilterPredicate(
+            "counter", Query.FilterOperator.GREATER_THAN_OR_EQUAL, prefix),
+        new Query.FilterPredicate(
+            "counter", Query.FilterOperator.LESS_THAN, prefix + "\uffff")));
+    Map<String, Long> totals = new HashMap<>();
+    for (Entity shard : datastore.prepare(query).asIterable()) {
+      String name = ((String) shard.getProperty("counter")).substring(prefix.length());
+      totals.merge(name, (long) shard.getProperty("count"), Long::sum);
+    }
+    return totals;
+  }
+
+  /** Deletes the shards of every counter */
+  public static void deleteAll() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> keys = new ArrayList<>();
+    Query query = new Query(KIND).setKeysOnly();
+    for (Entity shard : datastore.prepare(query).asIterable()) {
+      keys.add(shard.getKey());
+    }
+    datastore.delete(keys);
+  }
+}
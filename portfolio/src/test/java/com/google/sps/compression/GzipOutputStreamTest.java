@@ -0,0 +1,181 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class GzipOutputStreamTest {
+
+  private static final int THRESHOLD = 64;
+
+  private final DeflaterPool pool = new DeflaterPool(2, Deflater.DEFAULT_COMPRESSION);
+  private final FakeTarget target = new FakeTarget();
+
+  @Test
+  public void smallBodyIsSentUncompressed() throws IOException {
+    GzipOutputStream stream = new GzipOutputStream(target, pool, THRESHOLD);
+    byte[] body = "{\"small\":true}".getBytes(StandardCharsets.UTF_8);
+    stream.write(body);
+    stream.finish();
+
+    Assert.assertFalse(target.compressed);
+    Assert.assertEquals(body.length, target.contentLength);
+    Assert.assertArrayEquals(body, target.sent.toByteArray());
+  }
+
+  @Test
+  public void largeBodyRoundTripsThroughGzip() throws IOException {
+    GzipOutputStream stream = new GzipOutputStream(target, pool, THRESHOLD);
+    byte[] body = repeat("{\"comment\":\"hello world\"},", 500);
+    // Write in uneven chunks so the threshold is crossed mid-write
+    for (int offset = 0; offset < body.length; offset += 37) {
+      stream.write(body, offset, Math.min(37, body.length - offset));
+    }
+    stream.finish();
+
+    Assert.assertTrue(target.compressed);
+    Assert.assertTrue(target.sent.size() < body.length / 10);
+    Assert.assertArrayEquals(body, gunzip(target.sent.toByteArray()));
+  }
+
+  @Test
+  public void flushMidStreamKeepsOutputValid() throws IOException {
+    GzipOutputStream stream = new GzipOutputStream(target, pool, THRESHOLD);
+    byte[] first = repeat("a", 100);
+    byte[] second = repeat("b", 100);
+    stream.write(first);
+    stream.flush();
+    stream.write(second);
+    stream.finish();
+
+    byte[] expected = (new String(first, StandardCharsets.UTF_8)
+        + new String(second, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+    Assert.assertArrayEquals(expected, gunzip(target.sent.toByteArray()));
+  }
+
+  @Test
+  public void refusedCompressionPassesBytesThrough() throws IOException {
+    target.allowCompression = false;
+    GzipOutputStream stream = new GzipOutputStream(target, pool, THRESHOLD);
+    byte[] body = repeat("x", 500);
+    stream.write(body);
+    stream.finish();
+
+    Assert.assertFalse(target.compressed);
+    Assert.assertArrayEquals(body, target.sent.toByteArray());
+  }
+
+  @Test
+  public void asyncResponsePassesBytesThrough() throws IOException {
+    GzipOutputStream stream = new GzipOutputStream(target, pool, THRESHOLD);
+    WriteListener listener = new WriteListener() {
+      @Override
+      public void onWritePossible() {}
+
+      @Override
+      public void onError(Throwable throwable) {}
+    };
+    stream.setWriteListener(listener);
+    byte[] body = repeat("x", 500);
+    stream.write(body);
+    stream.finish();
+
+    Assert.assertSame(listener, target.listener);
+    Assert.assertFalse(target.compressed);
+    Assert.assertArrayEquals(body, target.sent.toByteArray());
+  }
+
+  @Test
+  public void acceptEncodingNegotiation() {
+    Assert.assertTrue(CompressionFilter.acceptsGzip("gzip, deflate, br"));
+    Assert.assertTrue(CompressionFilter.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+    Assert.assertTrue(CompressionFilter.acceptsGzip("*"));
+    Assert.assertFalse(CompressionFilter.acceptsGzip("gzip;q=0"));
+    Assert.assertFalse(CompressionFilter.acceptsGzip("identity"));
+    Assert.assertFalse(CompressionFilter.acceptsGzip(null));
+  }
+
+  private static byte[] repeat(String text, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(text);
+    }
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException {
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /** Records what the stream sends to the "client" */
+  private static final class FakeTarget implements GzipOutputStream.Target {
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    private boolean allowCompression = true;
+    private boolean compressed = false;
+    private int contentLength = -1;
+    private WriteListener listener;
+
+    @Override
+    public ServletOutputStream rawStream() {
+      return new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+          sent.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+          listener = writeListener;
+        }
+      };
+    }
+
+    @Override
+    public boolean startCompression() {
+      compressed = allowCompression;
+      return allowCompression;
+    }
+
+    @Override
+    public void setUncompressedLength(int length) {
+      contentLength = length;
+    }
+  }
+}
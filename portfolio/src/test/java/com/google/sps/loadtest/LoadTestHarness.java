@@ -0,0 +1,310 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.apphosting.api.ApiProxy;
+import com.google.sps.metrics.LatencyHistogram;
+import com.google.sps.servlets.DataServlet;
+import com.google.sps.servlets.UserAuthenticationServlet;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Drives the portfolio servlets with a concurrent GET/POST mix against the App Engine local
+ * Datastore and UserService stand-ins, and reports throughput and latency percentiles. The
+ * caller is responsible for setting up a LocalServiceTestHelper on the calling thread.
+ */
+public final class LoadTestHarness {
+
+  /** One kind of request in the traffic mix */
+  public enum Operation {
+    DATA_GET,
+    DATA_POST,
+    AUTH_GET,
+    AUTH_POST
+  }
+
+  private static final String[] SORT_ORDERS = {
+    "timestamp_descending", "timestamp_ascending", "user_descending",
+    "user_ascending", "length_descending", "length_ascending"
+  };
+
+  private static final int SEED_BATCH_SIZE = 500;
+
+  /**
+   * Puts Comment entities (same shape as DataServlet.doPost) in batched RPCs
+   * @param count   number of comments to create
+   */
+  public void seedComments(int count) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> batch = new ArrayList<>(SEED_BATCH_SIZE);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < count; i++) {
+      String comment = "Seeded comment number " + i + " about the portfolio";
+      Entity entity = new Entity("Comment");
+      entity.setProperty("email", "user" + (i % 100) + "@example.com");
+      entity.setProperty("name", "User " + (i % 100));
+      entity.setProperty("comment", comment);
+      entity.setProperty("timestamp", now - i);
+      entity.setProperty("length", comment.length());
+      batch.add(entity);
+      if (batch.size() == SEED_BATCH_SIZE) {
+        datastore.put(batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      datastore.put(batch);
+    }
+  }
+
+  /**
+   * Runs the configured traffic mix to completion on a fixed pool of worker threads
+   * @param config  number of threads/requests, the operation mix and the page size
+   */
+  public Report run(Config config) throws Exception {
+    // Every request runs as the same user, so lift the per-user write limit unless asked not to.
+    // The servlet reads it when it is created, so the property is restored right after.
+    String burst = System.getProperty("portfolio.writes.burst");
+    DataServlet dataServlet;
+    try {
+      if (burst == null) {
+        System.setProperty("portfolio.writes.burst", "1000000");
+      }
+      dataServlet = new DataServlet();
+    } finally {
+      if (burst == null) {
+        System.clearProperty("portfolio.writes.burst");
+      }
+    }
+    UserAuthenticationServlet authServlet = new UserAuthenticationServlet();
+    dataServlet.init();
+    authServlet.init();
+
+    // The local service stand-ins look up their environment per thread
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    Report report = new Report();
+    AtomicInteger remaining = new AtomicInteger(config.requests);
+    ExecutorService executor = Executors.newFixedThreadPool(config.threads);
+    List<Future<?>> workers = new ArrayList<>();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < config.threads; i++) {
+      workers.add(executor.submit(() -> {
+        ApiProxy.setEnvironmentForCurrentThread(environment);
+        try {
+          while (remaining.getAndDecrement() > 0) {
+            Operation operation = config.pickOperation();
+            long requestStart = System.nanoTime();
+            try {
+              execute(operation, dataServlet, authServlet, config.pageSize);
+            } catch (Exception e) {
+              report.errors.get(operation).increment();
+            }
+            report.latencies.get(operation).recordNanos(System.nanoTime() - requestStart);
+          }
+        } finally {
+          ApiProxy.clearEnvironmentForCurrentThread();
+        }
+        return null;
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    report.elapsedNanos = System.nanoTime() - start;
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    return report;
+  }
+
+  /**
+   * Issues one request against the matching servlet
+   * @param operation       which endpoint and method to hit
+   * @param dataServlet     the /data servlet
+   * @param authServlet     the /auth servlet
+   * @param pageSize        number of comments requested by GET /data
+   */
+  private void execute(Operation operation, DataServlet dataServlet,
+      UserAuthenticationServlet authServlet, int pageSize) throws Exception {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    HttpServletRequest request = mock(HttpServletRequest.class, withSettings().stubOnly());
+    HttpServletResponse response = mock(HttpServletResponse.class, withSettings().stubOnly());
+    when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+    switch (operation) {
+      case DATA_GET:
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getParameter("count")).thenReturn(String.valueOf(pageSize));
+        when(request.getParameter("sort"))
+            .thenReturn(SORT_ORDERS[random.nextInt(SORT_ORDERS.length)]);
+        when(request.getParameter("lang")).thenReturn("en");
+        dataServlet.doGet(request, response);
+        break;
+      case DATA_POST:
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getParameter("comment_name")).thenReturn("Load Tester");
+        when(request.getParameter("comment_content"))
+            .thenReturn("Load test comment " + random.nextLong());
+        dataServlet.doPost(request, response);
+        break;
+      case AUTH_GET:
+        when(request.getMethod()).thenReturn("GET");
+        authServlet.doGet(request, response);
+        break;
+      case AUTH_POST:
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getParameter("nickname")).thenReturn("tester" + random.nextInt(10));
+        authServlet.doPost(request, response);
+        break;
+    }
+  }
+
+  /** Load-test parameters, read from -Dloadtest.* system properties */
+  public static final class Config {
+
+    public final int comments;
+    public final int threads;
+    public final int requests;
+    public final int pageSize;
+    // Cumulative weights, indexed by Operation.ordinal()
+    private final int[] cumulativeWeights;
+
+    public Config(
+        int comments, int threads, int requests, int pageSize, Map<Operation, Integer> mix) {
+      this.comments = comments;
+      this.threads = threads;
+      this.requests = requests;
+      this.pageSize = pageSize;
+      this.cumulativeWeights = new int[Operation.values().length];
+      int total = 0;
+      for (Operation operation : Operation.values()) {
+        total += mix.getOrDefault(operation, 0);
+        cumulativeWeights[operation.ordinal()] = total;
+      }
+      if (total <= 0) {
+        throw new IllegalArgumentException("The operation mix needs at least one positive weight");
+      }
+    }
+
+    /**
+     * Builds a config from system properties, e.g.
+     * -Dloadtest.comments=20000 -Dloadtest.threads=16 -Dloadtest.requests=50000
+     * -Dloadtest.mix=DATA_GET:70,DATA_POST:10,AUTH_GET:15,AUTH_POST:5
+     */
+    public static Config fromSystemProperties() {
+      Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+      String mixProperty =
+          System.getProperty("loadtest.mix", "DATA_GET:70,DATA_POST:10,AUTH_GET:15,AUTH_POST:5");
+      for (String part : mixProperty.split(",")) {
+        String[] weight = part.trim().split(":");
+        mix.put(Operation.valueOf(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+      }
+      return new Config(
+          Integer.getInteger("loadtest.comments", 2000),
+          Integer.getInteger("loadtest.threads", 4),
+          Integer.getInteger("loadtest.requests", 2000),
+          Integer.getInteger("loadtest.pageSize", 50),
+          mix);
+    }
+
+    /** Picks an operation at random according to the configured weights */
+    Operation pickOperation() {
+      int total = cumulativeWeights[cumulativeWeights.length - 1];
+      int pick = ThreadLocalRandom.current().nextInt(total);
+      for (Operation operation : Operation.values()) {
+        if (pick < cumulativeWeights[operation.ordinal()]) {
+          return operation;
+        }
+      }
+      throw new IllegalStateException("Unreachable: weights are cumulative");
+    }
+  }
+
+  /** Per-operation latency histograms and error counts of one load-test run */
+  public static final class Report {
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private long elapsedNanos;
+
+    private Report() {
+      for (Operation operation : Operation.values()) {
+        latencies.put(operation, new LatencyHistogram());
+        errors.put(operation, new LongAdder());
+      }
+    }
+
+    public long getRequests() {
+      long total = 0;
+      for (LatencyHistogram histogram : latencies.values()) {
+        total += histogram.snapshot().getCount();
+      }
+      return total;
+    }
+
+    public long getErrors() {
+      long total = 0;
+      for (LongAdder adder : errors.values()) {
+        total += adder.sum();
+      }
+      return total;
+    }
+
+    /** Returns the overall throughput in requests per second */
+    public double getThroughput() {
+      return getRequests() / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Prints a table of count, errors and latency percentiles per operation
+     * @param out     where the report is printed
+     */
+    public void print(PrintStream out) {
+      out.printf("%-10s %8s %7s %9s %9s %9s %9s%n",
+          "operation", "count", "errors", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+      for (Operation operation : Operation.values()) {
+        LatencyHistogram.Snapshot snapshot = latencies.get(operation).snapshot();
+        out.printf("%-10s %8d %7d %9.2f %9.2f %9.2f %9.2f%n",
+            operation, snapshot.getCount(), errors.get(operation).sum(),
+            snapshot.valueAtQuantile(0.5) / 1000.0, snapshot.valueAtQuantile(0.9) / 1000.0,
+            snapshot.valueAtQuantile(0.99) / 1000.0, snapshot.getMaxMicros() / 1000.0);
+      }
+      out.printf("%d requests in %.2f s (%.1f req/s)%n",
+          getRequests(), elapsedNanos / 1e9, getThroughput());
+    }
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs the load-test harness offline. It is skipped unless -Dloadtest=true is given, so a plain
+ * mvn test stays fast. The defaults are a quick smoke run; scale it up with e.g.
+ * mvn test -Dtest=PortfolioLoadTest -Dloadtest=true -Dloadtest.comments=20000
+ */
+@RunWith(JUnit4.class)
+public final class PortfolioLoadTest {
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+              new LocalDatastoreServiceTestConfig(), new LocalUserServiceTestConfig())
+          .setEnvIsLoggedIn(true)
+          .setEnvEmail("loadtest@example.com")
+          .setEnvAuthDomain("example.com")
+          .setEnvAttributes(
+              Collections.singletonMap(
+                  "com.google.appengine.api.users.UserService.user_id_key", "1234567890"));
+
+  @BeforeClass
+  public static void requireLoadTestFlag() {
+    Assume.assumeTrue("Load test disabled; run with -Dloadtest=true",
+        Boolean.getBoolean("loadtest"));
+  }
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void servletsServeConfiguredMix() throws Exception {
+    LoadTestHarness.Config config = LoadTestHarness.Config.fromSystemProperties();
+    LoadTestHarness harness = new LoadTestHarness();
+    harness.seedComments(config.comments);
+
+    LoadTestHarness.Report report = harness.run(config);
+    report.print(System.out);
+
+    Assert.assertEquals(config.requests, report.getRequests());
+    Assert.assertEquals(0, report.getErrors());
+  }
+}
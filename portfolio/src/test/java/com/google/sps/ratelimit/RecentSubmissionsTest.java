@@ -0,0 +1,64 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class RecentSubmissionsTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicLong clock = new AtomicLong(1000 * SECOND);
+  private final RecentSubmissions submissions = new RecentSubmissions(10 * SECOND, clock::get);
+
+  @Test
+  public void duplicateWithinWindowIsCollapsed() {
+    Assert.assertTrue(submissions.claim("hello"));
+    Assert.assertFalse(submissions.claim("hello"));
+    Assert.assertTrue(submissions.claim("something else"));
+  }
+
+  @Test
+  public void duplicateAfterWindowIsAccepted() {
+    submissions.claim("hello");
+    clock.addAndGet(10 * SECOND);
+
+    Assert.assertTrue(submissions.claim("hello"));
+  }
+
+  @Test
+  public void releasedClaimCanBeRetried() {
+    submissions.claim("hello");
+    submissions.release("hello");
+
+    Assert.assertTrue(submissions.claim("hello"));
+  }
+
+  @Test
+  public void expiredSubmissionsAreEvicted() {
+    submissions.claim("a");
+    submissions.claim("b");
+    clock.addAndGet(11 * SECOND);
+    submissions.claim("c");
+
+    Assert.assertEquals(1, submissions.size());
+  }
+}
@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class TokenBucketLimiterTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicLong clock = new AtomicLong(1000 * SECOND);
+
+  @Test
+  public void allowsBurstThenRejects() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(3, SECOND, clock::get);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(SECOND, limiter.tryAcquire("a"));
+  }
+
+  @Test
+  public void keysAreLimitedIndependently() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(1, SECOND, clock::get);
+
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+    Assert.assertEquals(0, limiter.tryAcquire("b"));
+    Assert.assertTrue(limiter.tryAcquire("a") > 0);
+  }
+
+  @Test
+  public void tokensRefillOverTime() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(2, SECOND, clock::get);
+    limiter.tryAcquire("a");
+    limiter.tryAcquire("a");
+
+    clock.addAndGet(SECOND / 2);
+    Assert.assertEquals(SECOND / 2, limiter.tryAcquire("a"));
+
+    clock.addAndGet(SECOND / 2);
+    Assert.assertEquals(0, limiter.tryAcquire("a"));
+  }
+
+  @Test
+  public void refilledBucketsAreEvicted() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter(2, SECOND, clock::get);
+    limiter.tryAcquire("a");
+    limiter.tryAcquire("b");
+
+    clock.addAndGet(10 * SECOND);
+    limiter.tryAcquire("c");
+
+    Assert.assertEquals(1, limiter.size());
+  }
+}
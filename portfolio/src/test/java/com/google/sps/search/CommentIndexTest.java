@@ -0,0 +1,109 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CommentIndexTest {
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private CommentIndex index;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    index = new CommentIndex();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void tokenizeLowerCasesAndDropsPunctuation() {
+    Assert.assertEquals(
+        Arrays.asList("hello", "world", "42"), CommentIndex.tokenize("Hello, WORLD!! 42"));
+  }
+
+  @Test
+  public void moreFrequentMatchRanksFirst() {
+    index.add(comment(1, "maps are fun", 100));
+    index.add(comment(2, "maps maps maps", 50));
+    index.add(comment(3, "nothing relevant", 200));
+
+    JsonObject results = toJson(index.search("maps", 0, 10));
+
+    Assert.assertEquals(2, results.get("total").getAsInt());
+    Assert.assertEquals(2, idAt(results, 0));
+    Assert.assertEquals(1, idAt(results, 1));
+  }
+
+  @Test
+  public void pagesAreDisjoint() {
+    index.add(comment(1, "java", 300));
+    index.add(comment(2, "java", 200));
+    index.add(comment(3, "java", 100));
+
+    JsonObject secondPage = toJson(index.search("java", 1, 2));
+
+    Assert.assertEquals(3, secondPage.get("total").getAsInt());
+    Assert.assertEquals(1, secondPage.getAsJsonArray("results").size());
+    Assert.assertEquals(3, idAt(secondPage, 0));
+  }
+
+  @Test
+  public void removedAndReplacedCommentsAreNotFound() {
+    index.add(comment(1, "old text", 100));
+    index.add(comment(1, "new text", 100));
+    index.add(comment(2, "old text", 100));
+    index.remove(2);
+
+    Assert.assertEquals(0, toJson(index.search("old", 0, 10)).get("total").getAsInt());
+    Assert.assertEquals(1, toJson(index.search("new", 0, 10)).get("total").getAsInt());
+  }
+
+  private static Entity comment(long id, String text, long timestamp) {
+    Entity entity = new Entity("Comment", id);
+    entity.setProperty("email", "test@example.com");
+    entity.setProperty("name", "Tester");
+    entity.setProperty("comment", text);
+    entity.setProperty("timestamp", timestamp);
+    entity.setProperty("length", text.length());
+    return entity;
+  }
+
+  private static JsonObject toJson(SearchResults results) {
+    return new Gson().toJsonTree(results).getAsJsonObject();
+  }
+
+  private static long idAt(JsonObject results, int position) {
+    return results.getAsJsonArray("results").get(position).getAsJsonObject().get("id").getAsLong();
+  }
+}
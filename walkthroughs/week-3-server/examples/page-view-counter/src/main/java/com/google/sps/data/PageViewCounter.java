@@ -0,0 +1,139 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Page view counter that scales across threads and instances. Views are counted in a
+ * LongAdder (no lock, no Datastore write per view) and periodically added to one of several
+ * Datastore shard entities, so the total survives restarts and is shared by all instances.
+ */
+public final class PageViewCounter {
+
+  private static final String KIND = "PageViewShard";
+  private static final int NUM_SHARDS = 20;
+  private static final int MAX_RETRIES = 3;
+  private static final List<Key> SHARD_KEYS = new ArrayList<>();
+  static {
+    for (int shard = 0; shard < NUM_SHARDS; shard++) {
+      SHARD_KEYS.add(KeyFactory.createKey(KIND, "shard-" + shard));
+    }
+  }
+
+  private final long flushIntervalMillis;
+  private final LongAdder pending = new LongAdder();
+  private final AtomicLong nextFlush;
+  // Sum of all shards as of the last flush
+  private volatile long persisted = -1;
+  // Largest total returned so far, so the count shown never goes down mid-flush
+  private final AtomicLong shown = new AtomicLong();
+
+  /** @param flushIntervalMillis   how often local views are written to Datastore */
+  public PageViewCounter(long flushIntervalMillis) {
+    this.flushIntervalMillis = flushIntervalMillis;
+    // The first view flushes right away to pick up the total stored by earlier instances
+    this.nextFlush = new AtomicLong(0);
+  }
+
+  /** Counts one view and returns the best known total; at most one caller per interval flushes */
+  public long increment() {
+    pending.increment();
+
+    long now = System.currentTimeMillis();
+    long due = nextFlush.get();
+    if (now >= due && nextFlush.compareAndSet(due, now + flushIntervalMillis)) {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        // Counting must not fail the page; the views stay pending until the next flush
+      }
+    }
+    long total = Math.max(persisted, 0) + pending.sum();
+    return shown.accumulateAndGet(total, Math::max);
+  }
+
+  /** Writes the views counted locally since the last flush and re-reads the shared total */
+  public synchronized void flush() {
+    // Not sumThenReset(): on JDK 8 it can drop increments that race with the reset. Views
+    // counted after sum() stay pending for the next flush.
+    long delta = pending.sum();
+    if (delta > 0) {
+      pending.add(-delta);
+      try {
+        addToRandomShard(delta);
+      } catch (RuntimeException e) {
+        // Keep the views so the next flush retries them
+        pending.add(delta);
+        throw e;
+      }
+      persisted = Math.max(persisted, 0) + delta;
+    }
+    // Views stored by other instances; never below what this instance has stored itself
+    persisted = Math.max(persisted, readTotal());
+  }
+
+  private void addToRandomShard(long delta) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Key key = SHARD_KEYS.get(ThreadLocalRandom.current().nextInt(NUM_SHARDS));
+
+    for (int attempt = 0; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity entity;
+        try {
+          entity = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          entity = new Entity(key);
+          entity.setProperty("count", 0L);
+        }
+        entity.setProperty("count", (long) entity.getProperty("count") + delta);
+        datastore.put(transaction, entity);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt + 1 >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /** Sums the shards, fetched by key in one batch get (strongly consistent, unlike a query). */
+  private long readTotal() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    long total = 0;
+    for (Entity shard : datastore.get(SHARD_KEYS).values()) {
+      total += (long) shard.getProperty("count");
+    }
+    return total;
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.PageViewCounter;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -24,14 +25,25 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/page-views")
 public class PageViewServlet extends HttpServlet {
 
-  private int pageViews = 0;
+  // Local views are written to Datastore at most once every 10 seconds
+  private final PageViewCounter pageViews = new PageViewCounter(10_000);
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    pageViews++;
+    long views = pageViews.increment();
 
     response.setContentType("text/html;");
     response.getWriter().println("<h1>Page Views</h1>");
-    response.getWriter().println("<p>This page has been viewed " + pageViews + " times.</p>");
+    response.getWriter().println("<p>This page has been viewed " + views + " times.</p>");
+  }
+
+  @Override
+  public void destroy() {
+    // Don't lose the views counted since the last flush when the instance shuts down
+    try {
+      pageViews.flush();
+    } catch (RuntimeException e) {
+      log("Could not flush page views on shutdown", e);
+    }
   }
 }
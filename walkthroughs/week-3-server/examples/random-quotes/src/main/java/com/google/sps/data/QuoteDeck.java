@@ -0,0 +1,136 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Quotes pre-encoded as UTF-8 (each followed by a newline) in one shared byte array, so picking
+ * and writing a quote allocates nothing. Quotes are picked either uniformly at random or from a
+ * shuffle bag that deals every quote once before any quote repeats.
+ */
+public final class QuoteDeck {
+
+  // Quote i is data[offsets[i]] up to data[offsets[i + 1]]
+  private final byte[] data;
+  private final int[] offsets;
+
+  // The shuffle bag: order[0..dealt) have been dealt since the last reshuffle; guarded by order
+  private final int[] order;
+  private int dealt;
+
+  private QuoteDeck(byte[] data, int[] offsets) {
+    if (offsets.length < 2) {
+      throw new IllegalArgumentException("There are no quotes");
+    }
+    this.data = data;
+    this.offsets = offsets;
+    order = new int[offsets.length - 1];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+  }
+
+  /** @param quotes  the quotes (without trailing newlines) */
+  public static QuoteDeck of(List<String> quotes) {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    int[] offsets = new int[quotes.size() + 1];
+    for (int i = 0; i < quotes.size(); i++) {
+      byte[] quote = quotes.get(i).getBytes(StandardCharsets.UTF_8);
+      data.write(quote, 0, quote.length);
+      data.write('\n');
+      offsets[i + 1] = data.size();
+    }
+    return new QuoteDeck(data.toByteArray(), offsets);
+  }
+
+  /**
+   * Reads one quote per line, skipping blank lines and lines starting with #
+   * @param in      the UTF-8 quote file, which is read to the end but not closed
+   */
+  public static QuoteDeck read(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    ByteArrayOutputStream data = new ByteArrayOutputStream(64 * 1024);
+    int[] offsets = new int[1024];
+    int count = 0;
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      byte[] quote = line.getBytes(StandardCharsets.UTF_8);
+      data.write(quote, 0, quote.length);
+      data.write('\n');
+      count++;
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, count * 2);
+      }
+      offsets[count] = data.size();
+    }
+    return new QuoteDeck(data.toByteArray(), Arrays.copyOf(offsets, count + 1));
+  }
+
+  public int size() {
+    return order.length;
+  }
+
+  /** Returns the index of a uniformly random quote. */
+  public int random() {
+    return ThreadLocalRandom.current().nextInt(order.length);
+  }
+
+  /**
+   * Returns the index of the next quote from the shuffle bag. The bag is shuffled one draw at a
+   * time (Fisher-Yates), and refilled once every quote has been dealt.
+   */
+  public int deal() {
+    synchronized (order) {
+      if (dealt == order.length) {
+        dealt = 0;
+      }
+      int pick = dealt + ThreadLocalRandom.current().nextInt(order.length - dealt);
+      int quote = order[pick];
+      order[pick] = order[dealt];
+      order[dealt] = quote;
+      dealt++;
+      return quote;
+    }
+  }
+
+  /** The shared array holding every encoded quote; must not be modified. */
+  public byte[] data() {
+    return data;
+  }
+
+  /** Returns where a quote starts in data(). */
+  public int offset(int quote) {
+    return offsets[quote];
+  }
+
+  /** Returns the length in bytes of a quote, including its newline. */
+  public int length(int quote) {
+    return offsets[quote + 1] - offsets[quote];
+  }
+}
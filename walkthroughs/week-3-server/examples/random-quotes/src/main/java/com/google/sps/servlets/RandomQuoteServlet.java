@@ -14,23 +14,42 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.QuoteDeck;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that returns a random quote. */
+/**
+ * Servlet that returns a random quote, or with ?shuffle=true the next quote from a shuffle bag
+ * that shows every quote before repeating one. The quotes are read from the file named by the
+ * randomquotes.file system property (one per line) if it is set, and are encoded once in init.
+ */
 @WebServlet("/random-quote")
 public final class RandomQuoteServlet extends HttpServlet {
 
-  private List<String> quotes;
+  private static final String QUOTES_FILE = System.getProperty("randomquotes.file");
+
+  private QuoteDeck quotes;
 
   @Override
-  public void init() {
-    quotes = new ArrayList<>();
+  public void init() throws ServletException {
+    if (QUOTES_FILE != null && !QUOTES_FILE.isEmpty()) {
+      try (InputStream in = new FileInputStream(QUOTES_FILE)) {
+        quotes = QuoteDeck.read(in);
+      } catch (IOException | IllegalArgumentException e) {
+        throw new ServletException("Cannot load quotes from " + QUOTES_FILE, e);
+      }
+      return;
+    }
+
+    List<String> quotes = new ArrayList<>();
     quotes.add(
         "A ship in port is safe, but that is not what ships are for. "
             + "Sail out to sea and do new things. - Grace Hopper");
@@ -46,13 +65,18 @@ public final class RandomQuoteServlet extends HttpServlet {
         "Sometimes it is the people no one can imagine anything of "
             + "who do the things no one can imagine. - Alan Turing");
     quotes.add("Those who can imagine anything, can create the impossible. - Alan Turing");
+    this.quotes = QuoteDeck.of(quotes);
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String quote = quotes.get((int) (Math.random() * quotes.size()));
+    int quote = Boolean.parseBoolean(request.getParameter("shuffle"))
+        ? quotes.deal()
+        : quotes.random();
 
-    response.setContentType("text/html;");
-    response.getWriter().println(quote);
+    // Write the pre-encoded bytes directly, so serving a quote allocates nothing here
+    response.setContentType("text/html;charset=UTF-8");
+    response.setContentLength(quotes.length(quote));
+    response.getOutputStream().write(quotes.data(), quotes.offset(quote), quotes.length(quote));
   }
 }
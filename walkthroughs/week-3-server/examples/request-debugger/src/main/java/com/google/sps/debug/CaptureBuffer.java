@@ -0,0 +1,83 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.debug;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer of the most recent request captures (one NDJSON line each). Writers
+ * claim a sequence number and overwrite the oldest slot; a dump walks the slots from oldest to
+ * newest and skips any slot that was overwritten while it was being read.
+ */
+public final class CaptureBuffer {
+
+  private final AtomicReferenceArray<Capture> slots;
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** @param capacity   how many captures are kept */
+  public CaptureBuffer(int capacity) {
+    slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * Stores a capture, replacing the oldest one if the buffer is full
+   * @param json    the capture as a single line of JSON
+   */
+  public void add(String json) {
+    long next = sequence.getAndIncrement();
+    slots.set((int) (next % slots.length()), new Capture(next, json));
+  }
+
+  /** Returns the number of captures ever added. */
+  public long getTotalCaptured() {
+    return sequence.get();
+  }
+
+  /**
+   * Writes the buffered captures as NDJSON, oldest first
+   * @param out     where the captures are written, one per line
+   */
+  public void dump(PrintWriter out) {
+    long end = sequence.get();
+    for (long i = Math.max(0, end - slots.length()); i < end; i++) {
+      Capture capture = slots.get((int) (i % slots.length()));
+      // The slot may not be written yet, or may already hold a newer capture
+      if (capture != null && capture.sequence == i) {
+        out.print(capture.json);
+        out.print('\n');
+      }
+    }
+  }
+
+  /** Drops every buffered capture. */
+  public void clear() {
+    for (int i = 0; i < slots.length(); i++) {
+      slots.set(i, null);
+    }
+  }
+
+  private static final class Capture {
+
+    private final long sequence;
+    private final String json;
+
+    Capture(long sequence, String json) {
+      this.sequence = sequence;
+      this.json = json;
+    }
+  }
+}
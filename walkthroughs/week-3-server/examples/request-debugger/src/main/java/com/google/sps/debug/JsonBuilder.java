@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.debug;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer over a StringBuilder. It is meant to be kept per thread and
+ * reset between requests, so writing a document allocates nothing once the buffer has grown.
+ * Commas are inserted automatically; callers only open, name and close values.
+ */
+public final class JsonBuilder {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  private static final int MAX_DEPTH = 32;
+
+  private final StringBuilder json = new StringBuilder(1024);
+  private final char[] chunk = new char[4096];
+  // needsComma[depth] is true once the object/array at that depth has a member
+  private final boolean[] needsComma = new boolean[MAX_DEPTH];
+  private int depth;
+  private boolean afterName;
+
+  /** Clears the builder for the next document, keeping its buffer. */
+  public JsonBuilder reset() {
+    json.setLength(0);
+    depth = 0;
+    needsComma[0] = false;
+    afterName = false;
+    return this;
+  }
+
+  public JsonBuilder beginObject() {
+    return open('{');
+  }
+
+  public JsonBuilder endObject() {
+    return close('}');
+  }
+
+  public JsonBuilder beginArray() {
+    return open('[');
+  }
+
+  public JsonBuilder endArray() {
+    return close(']');
+  }
+
+  /** Writes the name of the next member of the current object. */
+  public JsonBuilder name(String name) {
+    separate();
+    string(name);
+    json.append(':');
+    afterName = true;
+    return this;
+  }
+
+  /** Writes a string value, or null. */
+  public JsonBuilder value(String value) {
+    separate();
+    if (value == null) {
+      json.append("null");
+    } else {
+      string(value);
+    }
+    return this;
+  }
+
+  public JsonBuilder value(long value) {
+    separate();
+    json.append(value);
+    return this;
+  }
+
+  /** Returns the length of the document written so far. */
+  public int length() {
+    return json.length();
+  }
+
+  /** Returns the document written so far. */
+  @Override
+  public String toString() {
+    return json.toString();
+  }
+
+  /** Writes the document in chunks, without copying it into a String first. */
+  public void writeTo(Writer out) throws IOException {
+    for (int start = 0; start < json.length(); start += chunk.length) {
+      int end = Math.min(start + chunk.length, json.length());
+      json.getChars(start, end, chunk, 0);
+      out.write(chunk, 0, end - start);
+    }
+  }
+
+  private JsonBuilder open(char bracket) {
+    separate();
+    json.append(bracket);
+    if (++depth >= MAX_DEPTH) {
+      throw new IllegalStateException("JSON nested more than " + MAX_DEPTH + " levels deep");
+    }
+    needsComma[depth] = false;
+    return this;
+  }
+
+  private JsonBuilder close(char bracket) {
+    json.append(bracket);
+    depth--;
+    return this;
+  }
+
+  /** Adds the comma between members, unless this value belongs to the name just written. */
+  private void separate() {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (needsComma[depth]) {
+      json.append(',');
+    }
+    needsComma[depth] = true;
+  }
+
+  private void string(String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          // Also escapes the line separators that break JavaScript parsers
+          if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+            json.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf])
+                .append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.debug;
+
+import java.util.Enumeration;
+import java.util.Locale;
+import javax.servlet.http.HttpServletRequest;
+
+/** Describes a request (line, headers, parameters, body size) as one JSON object. */
+public final class RequestJson {
+
+  private RequestJson() {}
+
+  /**
+   * Writes the request as a JSON object
+   * @param json            the builder to write to
+   * @param request         the request to describe
+   * @param bodyBytes       the size of the request body, as counted by the caller
+   * @param redactSecrets   whether to hide credentials (Authorization and Cookie headers)
+   */
+  public static void write(
+      JsonBuilder json, HttpServletRequest request, long bodyBytes, boolean redactSecrets) {
+    json.beginObject()
+        .name("timestamp").value(System.currentTimeMillis())
+        .name("method").value(request.getMethod())
+        .name("url").value(request.getRequestURL().toString())
+        .name("uri").value(request.getRequestURI())
+        .name("query").value(request.getQueryString())
+        .name("protocol").value(request.getProtocol())
+        .name("clientIp").value(request.getRemoteAddr())
+        .name("serverName").value(request.getServerName())
+        .name("contentType").value(request.getContentType())
+        .name("characterEncoding").value(request.getCharacterEncoding())
+        .name("contentLength").value(request.getContentLengthLong())
+        .name("bodyBytes").value(bodyBytes);
+
+    json.name("headers").beginObject();
+    Enumeration<String> headerNames = request.getHeaderNames();
+    while (headerNames.hasMoreElements()) {
+      String headerName = headerNames.nextElement();
+      json.name(headerName).beginArray();
+      boolean secret = redactSecrets && isSecret(headerName);
+      Enumeration<String> values = request.getHeaders(headerName);
+      while (values.hasMoreElements()) {
+        String value = values.nextElement();
+        json.value(secret ? "<redacted>" : value);
+      }
+      json.endArray();
+    }
+    json.endObject();
+
+    json.name("parameters").beginObject();
+    Enumeration<String> parameterNames = request.getParameterNames();
+    while (parameterNames.hasMoreElements()) {
+      String parameterName = parameterNames.nextElement();
+      json.name(parameterName).beginArray();
+      for (String value : request.getParameterValues(parameterName)) {
+        json.value(value);
+      }
+      json.endArray();
+    }
+    json.endObject();
+
+    json.endObject();
+  }
+
+  private static boolean isSecret(String headerName) {
+    String name = headerName.toLowerCase(Locale.ROOT);
+    return name.equals("authorization") || name.equals("proxy-authorization")
+        || name.equals("cookie");
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that downloads the requests sampled by RequestDebuggerServlet as NDJSON (oldest
+ * first), e.g. for replaying them. DELETE clears the buffer. The captures contain other
+ * visitors' requests, so access needs the requestdebugger.dumpToken system property as the
+ * token parameter, or a request from the same machine when no token is configured.
+ */
+@WebServlet("/request-captures")
+public final class RequestCapturesServlet extends HttpServlet {
+
+  // SHA-256 of the requestdebugger.dumpToken system property, or null if it is not set
+  private static final byte[] DUMP_TOKEN_DIGEST =
+      sha256(System.getProperty("requestdebugger.dumpToken"));
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!mayReadCaptures(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    response.setContentType("application/x-ndjson");
+    response.setHeader("X-Total-Captured",
+        String.valueOf(RequestDebuggerServlet.CAPTURES.getTotalCaptured()));
+    RequestDebuggerServlet.CAPTURES.dump(response.getWriter());
+  }
+
+  @Override
+  public void doDelete(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    if (!mayReadCaptures(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    RequestDebuggerServlet.CAPTURES.clear();
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  /**
+   * Returns whether the request may read or clear the captures: the token parameter must match
+   * the configured token, or without one the request must come from this machine
+   */
+  private static boolean mayReadCaptures(HttpServletRequest request) {
+    if (DUMP_TOKEN_DIGEST == null) {
+      String address = request.getRemoteAddr();
+      return address != null && (address.startsWith("127.") || address.equals("::1")
+          || address.equals("0:0:0:0:0:0:0:1"));
+    }
+    byte[] digest = sha256(request.getParameter("token"));
+    // Digests have a fixed length, so the comparison does not reveal the token's length either
+    return digest != null && MessageDigest.isEqual(digest, DUMP_TOKEN_DIGEST);
+  }
+
+  /** Returns the SHA-256 of a token, or null if it is missing or empty. */
+  private static byte[] sha256(String token) {
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -14,9 +14,14 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.debug.CaptureBuffer;
+import com.google.sps.debug.JsonBuilder;
+import com.google.sps.debug.RequestJson;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.Enumeration;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -25,53 +30,98 @@ import javax.servlet.http.HttpServletResponse;
 /**
  * Servlet that prints out debug info about requests. Explore the API here:
  * https://docs.oracle.com/javaee/7/api/javax/servlet/http/HttpServletRequest.html
+ *
+ * <p>Add ?format=json (or ndjson, one object per line) for a machine-readable dump. A sample of
+ * all requests (requestdebugger.sampleRate, 1% by default) is also recorded, with credentials
+ * redacted, and can be downloaded from /request-captures.
  */
 @WebServlet("/my-data-url")
 public final class RequestDebuggerServlet extends HttpServlet {
 
+  private static final double SAMPLE_RATE =
+      Double.parseDouble(System.getProperty("requestdebugger.sampleRate", "0.01"));
+
+  /** The most recent sampled requests, dumped by RequestCapturesServlet. */
+  static final CaptureBuffer CAPTURES =
+      new CaptureBuffer(Integer.getInteger("requestdebugger.captureCapacity", 1000));
+
+  /** One builder per thread, so writing JSON reuses the same buffer on every request. */
+  private static final ThreadLocal<JsonBuilder> BUILDERS =
+      ThreadLocal.withInitial(JsonBuilder::new);
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("text/html;");
-    printRequest(response.getWriter(), request);
+    handle(request, response);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("text/html;");
-    printRequest(response.getWriter(), request);
+    handle(request, response);
   }
 
-  private void printRequest(PrintWriter out, HttpServletRequest request) {
-    out.println("request URL: " + request.getRequestURL());
-    out.println("<br/>");
-
-    out.println("request URI: " + request.getRequestURI());
-    out.println("<br/>");
-
-    out.println("content length: " + request.getContentLength());
-    out.println("<br/>");
-
-    out.println("content type: " + request.getContentType());
-    out.println("<br/>");
+  private void handle(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String format = request.getParameter("format");
+    boolean json = "json".equals(format) || "ndjson".equals(format);
+    boolean sampled = ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
 
-    out.println("protocol: " + request.getProtocol());
-    out.println("<br/>");
+    // The body is only read (to measure it) when a JSON description is needed
+    long bodyBytes = json || sampled ? countBodyBytes(request) : -1;
+    JsonBuilder builder = BUILDERS.get();
+    if (sampled) {
+      RequestJson.write(builder.reset(), request, bodyBytes, true);
+      CAPTURES.add(builder.toString());
+    }
 
-    out.println("client IP: " + request.getRemoteAddr());
-    out.println("<br/>");
+    if (json) {
+      RequestJson.write(builder.reset(), request, bodyBytes, false);
+      PrintWriter out = response.getWriter();
+      if (format.equals("ndjson")) {
+        response.setContentType("application/x-ndjson");
+        builder.writeTo(out);
+        out.print('\n');
+      } else {
+        response.setContentType("application/json");
+        builder.writeTo(out);
+      }
+    } else {
+      response.setContentType("text/html;");
+      printRequest(response.getWriter(), request);
+    }
+  }
 
-    out.println("server name: " + request.getServerName());
-    out.println("<br/>");
+  /** Reads and counts the request body (form bodies have already been read as parameters). */
+  private long countBodyBytes(HttpServletRequest request) throws IOException {
+    String contentType = request.getContentType();
+    if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+      return Math.max(0, request.getContentLengthLong());
+    }
+    long total = 0;
+    byte[] buffer = new byte[8192];
+    InputStream in = request.getInputStream();
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      total += read;
+    }
+    return total;
+  }
 
-    out.println("character encoding: " + request.getCharacterEncoding());
-    out.println("<br/>");
+  private void printRequest(PrintWriter out, HttpServletRequest request) {
+    printLine(out, "request URL: ", request.getRequestURL());
+    printLine(out, "request URI: ", request.getRequestURI());
+    printLine(out, "content length: ", request.getContentLength());
+    printLine(out, "content type: ", request.getContentType());
+    printLine(out, "protocol: ", request.getProtocol());
+    printLine(out, "client IP: ", request.getRemoteAddr());
+    printLine(out, "server name: ", request.getServerName());
+    printLine(out, "character encoding: ", request.getCharacterEncoding());
 
     out.println("headers:");
     out.println("<ul>");
     Enumeration<String> headerNames = request.getHeaderNames();
     while (headerNames.hasMoreElements()) {
       String headerName = headerNames.nextElement();
-      out.print("<li>" + headerName + ": " + request.getHeader(headerName) + "</li>");
+      printItem(out, headerName, request.getHeader(headerName));
     }
     out.println("</ul>");
 
@@ -80,8 +130,24 @@ public final class RequestDebuggerServlet extends HttpServlet {
     Enumeration<String> parameterNames = request.getParameterNames();
     while (parameterNames.hasMoreElements()) {
       String parameterName = parameterNames.nextElement();
-      out.print("<li>" + parameterName + ": " + request.getParameter(parameterName) + "</li>");
+      printItem(out, parameterName, request.getParameter(parameterName));
     }
     out.println("</ul>");
   }
+
+  // The pieces are printed one by one rather than concatenated into a new String first
+
+  private static void printLine(PrintWriter out, String label, Object value) {
+    out.print(label);
+    out.println(value);
+    out.println("<br/>");
+  }
+
+  private static void printItem(PrintWriter out, String name, String value) {
+    out.print("<li>");
+    out.print(name);
+    out.print(": ");
+    out.print(value);
+    out.print("</li>");
+  }
 }
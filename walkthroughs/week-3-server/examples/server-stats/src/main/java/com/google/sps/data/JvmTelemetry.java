@@ -0,0 +1,231 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * JVM telemetry read from the java.lang.management MXBeans: garbage collection, memory pools,
+ * threads, allocation rate and JIT compilation. Periodic samples are kept in a fixed-size ring
+ * of primitive columns and written out as time series.
+ */
+public final class JvmTelemetry {
+
+  /** The sampled series, in column order. */
+  private static final String[] SERIES = {
+    "heapUsed", "nonHeapUsed", "gcCount", "gcTimeMillis", "threadCount", "allocationRate",
+    "jitTimeMillis"
+  };
+  private static final int HEAP_USED = 0;
+  private static final int NON_HEAP_USED = 1;
+  private static final int GC_COUNT = 2;
+  private static final int GC_TIME = 3;
+  private static final int THREAD_COUNT = 4;
+  private static final int ALLOCATION_RATE = 5;
+  private static final int JIT_TIME = 6;
+
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+
+  private final long minIntervalMillis;
+  private final long[] timestamps;
+  private final long[][] columns;
+  // Index of the oldest sample and the number of samples held
+  private int start;
+  private int size;
+  private long lastSampleMillis;
+  private long lastAllocatedBytes = -1;
+
+  /**
+   * @param capacity            how many samples are kept
+   * @param minIntervalMillis   samples closer together than this are skipped
+   */
+  public JvmTelemetry(int capacity, long minIntervalMillis) {
+    this.minIntervalMillis = minIntervalMillis;
+    timestamps = new long[capacity];
+    columns = new long[SERIES.length][capacity];
+  }
+
+  /**
+   * Records a sample unless the previous one is more recent than the minimum interval
+   * @param nowMillis   the current time
+   */
+  public synchronized void sampleIfDue(long nowMillis) {
+    if (size > 0 && nowMillis - lastSampleMillis < minIntervalMillis) {
+      return;
+    }
+    int slot;
+    if (size < timestamps.length) {
+      slot = (start + size) % timestamps.length;
+      size++;
+    } else {
+      // Full: overwrite the oldest sample
+      slot = start;
+      start = (start + 1) % timestamps.length;
+    }
+
+    long gcCount = 0;
+    long gcTime = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcCount += Math.max(0, collector.getCollectionCount());
+      gcTime += Math.max(0, collector.getCollectionTime());
+    }
+
+    long allocatedBytes = allocatedBytes();
+    long allocationRate = -1;
+    if (allocatedBytes >= 0 && lastAllocatedBytes >= 0 && nowMillis > lastSampleMillis) {
+      // Allocations of threads that died since the last sample are lost, hence the clamp
+      allocationRate = Math.max(0, allocatedBytes - lastAllocatedBytes) * 1000
+          / (nowMillis - lastSampleMillis);
+    }
+
+    timestamps[slot] = nowMillis;
+    columns[HEAP_USED][slot] = memory.getHeapMemoryUsage().getUsed();
+    columns[NON_HEAP_USED][slot] = memory.getNonHeapMemoryUsage().getUsed();
+    columns[GC_COUNT][slot] = gcCount;
+    columns[GC_TIME][slot] = gcTime;
+    columns[THREAD_COUNT][slot] = threads.getThreadCount();
+    columns[ALLOCATION_RATE][slot] = allocationRate;
+    columns[JIT_TIME][slot] = jitTimeMillis();
+
+    lastSampleMillis = nowMillis;
+    lastAllocatedBytes = allocatedBytes;
+  }
+
+  /**
+   * Writes the samples as JSON arrays of equal length, oldest first, e.g.
+   * {"timestamps": [...], "heapUsed": [...], ...}. Values of -1 are unavailable on this JVM.
+   */
+  public synchronized void writeSeries(StringBuilder json) {
+    json.append("{\"timestamps\":");
+    appendColumn(json, timestamps);
+    for (int i = 0; i < SERIES.length; i++) {
+      json.append(",\"").append(SERIES[i]).append("\":");
+      appendColumn(json, columns[i]);
+    }
+    json.append('}');
+  }
+
+  /**
+   * Writes the current state as JSON object members (without the surrounding braces):
+   * garbageCollectors, memoryPools, threads, allocatedBytes and jitTimeMillis.
+   */
+  public void writeSnapshot(StringBuilder json) {
+    json.append("\"garbageCollectors\":[");
+    boolean first = true;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      first = separate(json, first);
+      json.append("{\"name\":");
+      appendString(json, collector.getName());
+      json.append(",\"count\":").append(collector.getCollectionCount())
+          .append(",\"timeMillis\":").append(collector.getCollectionTime()).append('}');
+    }
+
+    json.append("],\"memoryPools\":[");
+    first = true;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      MemoryUsage usage = pool.getUsage();
+      first = separate(json, first);
+      json.append("{\"name\":");
+      appendString(json, pool.getName());
+      json.append(",\"type\":\"").append(pool.getType()).append('"')
+          .append(",\"used\":").append(usage.getUsed())
+          .append(",\"committed\":").append(usage.getCommitted())
+          .append(",\"max\":").append(usage.getMax()).append('}');
+    }
+
+    // Thread states need a ThreadInfo per thread, but without stack traces they are cheap
+    int[] states = new int[Thread.State.values().length];
+    for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds(), 0)) {
+      if (info != null) {
+        states[info.getThreadState().ordinal()]++;
+      }
+    }
+    json.append("],\"threads\":{\"count\":").append(threads.getThreadCount())
+        .append(",\"daemon\":").append(threads.getDaemonThreadCount())
+        .append(",\"peak\":").append(threads.getPeakThreadCount())
+        .append(",\"totalStarted\":").append(threads.getTotalStartedThreadCount())
+        .append(",\"states\":{");
+    for (Thread.State state : Thread.State.values()) {
+      if (state.ordinal() > 0) {
+        json.append(',');
+      }
+      json.append('"').append(state).append("\":").append(states[state.ordinal()]);
+    }
+    json.append("}},\"allocatedBytes\":").append(allocatedBytes())
+        .append(",\"jitTimeMillis\":").append(jitTimeMillis());
+  }
+
+  /** Bytes allocated by the live threads, or -1 where the JVM cannot measure it. */
+  private long allocatedBytes() {
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+    if (!hotspotThreads.isThreadAllocatedMemorySupported()
+        || !hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    long total = 0;
+    for (long bytes : hotspotThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      total += Math.max(0, bytes);
+    }
+    return total;
+  }
+
+  private long jitTimeMillis() {
+    return compilation != null && compilation.isCompilationTimeMonitoringSupported()
+        ? compilation.getTotalCompilationTime() : -1;
+  }
+
+  private void appendColumn(StringBuilder json, long[] column) {
+    json.append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(column[(start + i) % column.length]);
+    }
+    json.append(']');
+  }
+
+  private static boolean separate(StringBuilder json, boolean first) {
+    if (!first) {
+      json.append(',');
+    }
+    return false;
+  }
+
+  /** Appends a JSON string; MXBean names are plain text, so only quotes need escaping. */
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\');
+      }
+      json.append(c);
+    }
+    json.append('"');
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.profiling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Controls one JDK Flight Recorder recording at a time. The recording runs with a built-in
+ * settings profile ("default" is low overhead, "profile" samples more) and can be copied to
+ * a file while it runs, or stopped and kept for download until the next one starts.
+ */
+public final class FlightRecorderProfiler {
+
+  // Bounds the disk a forgotten recording can use
+  private static final Duration MAX_AGE = Duration.ofMinutes(30);
+  private static final long MAX_SIZE_BYTES = 100L * 1024 * 1024;
+
+  private Recording recording;
+  private String profile;
+  private Path lastRecording;
+
+  /**
+   * Starts a new recording, discarding the previous one
+   * @param settings    the JFR configuration name, e.g. "default" or "profile"
+   * @throws IllegalArgumentException if there is no configuration with that name
+   * @throws IllegalStateException if a recording is already running
+   */
+  public synchronized void start(String settings) throws IOException {
+    if (isRunning()) {
+      throw new IllegalStateException("A recording is already running");
+    }
+    Configuration configuration;
+    try {
+      configuration = Configuration.getConfiguration(settings);
+    } catch (IOException | ParseException e) {
+      throw new IllegalArgumentException("Unknown JFR settings: " + settings, e);
+    }
+    discard();
+
+    Recording next = new Recording(configuration);
+    next.setName("server-stats");
+    next.setToDisk(true);
+    next.setMaxAge(MAX_AGE);
+    next.setMaxSize(MAX_SIZE_BYTES);
+    // Throttled allocation sampling (JDK 16+), so allocation sites show up with any settings
+    next.enable("jdk.ObjectAllocationSample");
+    next.start();
+    recording = next;
+    profile = settings;
+  }
+
+  /**
+   * Stops the running recording and keeps it as the recording to download
+   * @throws IllegalStateException if no recording is running
+   */
+  public synchronized Path stop() throws IOException {
+    if (!isRunning()) {
+      throw new IllegalStateException("No recording is running");
+    }
+    Path file = Files.createTempFile("server-stats-", ".jfr");
+    recording.stop();
+    recording.dump(file);
+    recording.close();
+    recording = null;
+    deleteLastRecording();
+    lastRecording = file;
+    return file;
+  }
+
+  /**
+   * Returns a file with the recorded data: a copy of the running recording so far (which the
+   * caller must delete), or else the last stopped recording; null if there is neither.
+   */
+  public synchronized RecordingFile currentData() throws IOException {
+    if (isRunning()) {
+      Path file = Files.createTempFile("server-stats-", ".jfr");
+      recording.dump(file);
+      return new RecordingFile(file, true);
+    }
+    return lastRecording == null ? null : new RecordingFile(lastRecording, false);
+  }
+
+  public synchronized boolean isRunning() {
+    return recording != null && recording.getState() == RecordingState.RUNNING;
+  }
+
+  /** Returns the settings of the running (or last) recording, or null. */
+  public synchronized String getProfile() {
+    return profile;
+  }
+
+  /** Returns when the running recording started, or null. */
+  public synchronized Instant getStartTime() {
+    return isRunning() ? recording.getStartTime() : null;
+  }
+
+  /** Stops any recording and deletes the recorded data. */
+  public synchronized void discard() throws IOException {
+    if (recording != null) {
+      recording.close();
+      recording = null;
+    }
+    deleteLastRecording();
+  }
+
+  private void deleteLastRecording() throws IOException {
+    if (lastRecording != null) {
+      Files.deleteIfExists(lastRecording);
+      lastRecording = null;
+    }
+  }
+
+  /** A .jfr file to read, and whether it is a temporary copy to delete afterwards. */
+  public static final class RecordingFile {
+
+    private final Path path;
+    private final boolean temporary;
+
+    RecordingFile(Path path, boolean temporary) {
+      this.path = path;
+      this.temporary = temporary;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    /** Deletes the file if it is a temporary copy of a running recording. */
+    public void release() throws IOException {
+      if (temporary) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.profiling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Hot methods and top allocation sites of a JFR recording. Hot methods are ranked by how many
+ * execution samples had them on top of the stack; allocation sites are the allocating method
+ * and class, ranked by the bytes they account for.
+ *
+ * <p>Note: The private variables in this class are converted into JSON.
+ */
+public final class ProfileSummary {
+
+  private final long executionSamples;
+  private final List<Entry> hotMethods;
+  private final List<Entry> allocationSites;
+
+  private ProfileSummary(long executionSamples, List<Entry> hotMethods,
+      List<Entry> allocationSites) {
+    this.executionSamples = executionSamples;
+    this.hotMethods = hotMethods;
+    this.allocationSites = allocationSites;
+  }
+
+  /**
+   * Reads a recording and summarizes it
+   * @param file    the .jfr file
+   * @param top     how many hot methods and allocation sites to return
+   */
+  public static ProfileSummary read(Path file, int top) throws IOException {
+    long executionSamples = 0;
+    Map<String, Long> methodSamples = new HashMap<>();
+    // The "profile" settings record both kinds; only one is counted so bytes are not doubled
+    Map<String, Long> sampledBytes = new HashMap<>();
+    Map<String, Long> tlabBytes = new HashMap<>();
+
+    try (RecordingFile recording = new RecordingFile(file)) {
+      while (recording.hasMoreEvents()) {
+        RecordedEvent event = recording.readEvent();
+        String type = event.getEventType().getName();
+        if (type.equals("jdk.ExecutionSample")) {
+          executionSamples++;
+          methodSamples.merge(topFrame(event.getStackTrace()), 1L, Long::sum);
+        } else if (type.equals("jdk.ObjectAllocationSample")
+            || type.equals("jdk.ObjectAllocationInNewTLAB")
+            || type.equals("jdk.ObjectAllocationOutsideTLAB")) {
+          RecordedClass objectClass = event.getValue("objectClass");
+          String site = topFrame(event.getStackTrace()) + " allocating "
+              + (objectClass == null ? "?" : objectClass.getName());
+          Map<String, Long> bytes =
+              type.equals("jdk.ObjectAllocationSample") ? sampledBytes : tlabBytes;
+          bytes.merge(site, allocationWeight(event, type), Long::sum);
+        }
+      }
+    }
+    Map<String, Long> allocatedBytes = sampledBytes.isEmpty() ? tlabBytes : sampledBytes;
+    return new ProfileSummary(executionSamples, Entry.top(methodSamples, top),
+        Entry.top(allocatedBytes, top));
+  }
+
+  /**
+   * Bytes an allocation event stands for: the sampled weight, the new TLAB (which the sampled
+   * allocation fills) or the single object allocated outside a TLAB.
+   */
+  private static long allocationWeight(RecordedEvent event, String type) {
+    switch (type) {
+      case "jdk.ObjectAllocationSample":
+        return event.getLong("weight");
+      case "jdk.ObjectAllocationInNewTLAB":
+        return event.getLong("tlabSize");
+      default:
+        return event.getLong("allocationSize");
+    }
+  }
+
+  private static String topFrame(RecordedStackTrace stackTrace) {
+    if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+      return "<unknown>";
+    }
+    RecordedFrame frame = stackTrace.getFrames().get(0);
+    RecordedMethod method = frame.getMethod();
+    return method.getType().getName() + "." + method.getName();
+  }
+
+  /** One hot method (value = samples) or allocation site (value = bytes). */
+  public static final class Entry {
+
+    private final String name;
+    private final long value;
+
+    Entry(String name, long value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    static List<Entry> top(Map<String, Long> values, int n) {
+      List<Entry> entries = new ArrayList<>();
+      values.forEach((name, value) -> entries.add(new Entry(name, value)));
+      entries.sort((a, b) -> Long.compare(b.value, a.value));
+      return entries.subList(0, Math.min(n, entries.size()));
+    }
+  }
+}
@@ -0,0 +1,214 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.profiling.FlightRecorderProfiler;
+import com.google.sps.profiling.ProfileSummary;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Starts and stops a JDK Flight Recorder recording of the server and returns it, either as the
+ * .jfr file (?format=jfr, for JDK Mission Control) or summarized as JSON hot methods and
+ * allocation sites (?format=summary&amp;top=20). Without a format, returns the recorder status.
+ * POST action=start (with profile=default or profile) or action=stop controls the recording.
+ * Recordings show everything the server runs, so access needs the serverstats.profilerToken
+ * system property as the token parameter, or a request from the same machine when no token is
+ * configured. Responds 501 on JVMs without Flight Recorder.
+ */
+@WebServlet("/profiler")
+public final class ProfilerServlet extends HttpServlet {
+
+  // SHA-256 of the serverstats.profilerToken system property, or null if it is not set
+  private static final byte[] PROFILER_TOKEN_DIGEST =
+      sha256(System.getProperty("serverstats.profilerToken"));
+  private static final int DEFAULT_TOP = 20;
+  private static final int MAX_TOP = 1000;
+
+  private final Gson gson = new Gson();
+
+  // Created on first use, after checking that the JVM has Flight Recorder
+  private FlightRecorderProfiler profiler;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    FlightRecorderProfiler profiler = getProfiler(request, response);
+    if (profiler == null) {
+      return;
+    }
+    String format = request.getParameter("format");
+    if (format == null || format.isEmpty()) {
+      writeStatus(profiler, response);
+      return;
+    }
+    if (!format.equals("jfr") && !format.equals("summary")) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format: " + format);
+      return;
+    }
+    int top = parseTop(request.getParameter("top"));
+    if (top < 0) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "top must be between 1 and " + MAX_TOP);
+      return;
+    }
+
+    FlightRecorderProfiler.RecordingFile recording = profiler.currentData();
+    if (recording == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Nothing has been recorded");
+      return;
+    }
+    try {
+      if (format.equals("jfr")) {
+        response.setContentType("application/octet-stream");
+        response.setHeader("Content-Disposition", "attachment; filename=\"server-stats.jfr\"");
+        response.setContentLengthLong(Files.size(recording.getPath()));
+        Files.copy(recording.getPath(), response.getOutputStream());
+      } else {
+        ProfileSummary summary = ProfileSummary.read(recording.getPath(), top);
+        response.setContentType("application/json;");
+        response.getWriter().println(gson.toJson(summary));
+      }
+    } finally {
+      recording.release();
+    }
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    FlightRecorderProfiler profiler = getProfiler(request, response);
+    if (profiler == null) {
+      return;
+    }
+    String action = request.getParameter("action");
+    try {
+      if ("start".equals(action)) {
+        String profile = request.getParameter("profile");
+        profiler.start(profile == null || profile.isEmpty() ? "default" : profile);
+      } else if ("stop".equals(action)) {
+        profiler.stop();
+      } else {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "action must be start or stop");
+        return;
+      }
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    } catch (IllegalStateException e) {
+      response.sendError(HttpServletResponse.SC_CONFLICT, e.getMessage());
+      return;
+    }
+    writeStatus(profiler, response);
+  }
+
+  /**
+   * Returns the profiler after checking access, or sends the error response and returns null
+   * @param request     the request, checked for the token or a local address
+   * @param response    the response the error is sent on
+   */
+  private synchronized FlightRecorderProfiler getProfiler(HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    if (!mayProfile(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return null;
+    }
+    if (profiler == null) {
+      if (!isFlightRecorderAvailable()) {
+        response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED,
+            "JDK Flight Recorder is not available on this JVM");
+        return null;
+      }
+      profiler = new FlightRecorderProfiler();
+    }
+    return profiler;
+  }
+
+  private void writeStatus(FlightRecorderProfiler profiler, HttpServletResponse response)
+      throws IOException {
+    Map<String, Object> status = new LinkedHashMap<>();
+    Instant startTime = profiler.getStartTime();
+    status.put("running", profiler.isRunning());
+    status.put("profile", profiler.getProfile());
+    status.put("startTime", startTime == null ? null : startTime.toString());
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(status));
+  }
+
+  /** Returns the number of entries to summarize, or -1 if the parameter is invalid. */
+  private static int parseTop(String value) {
+    if (value == null || value.isEmpty()) {
+      return DEFAULT_TOP;
+    }
+    try {
+      int top = Integer.parseInt(value);
+      return top < 1 || top > MAX_TOP ? -1 : top;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns whether this JVM ships jdk.jfr and can record. The jdk.jfr classes are only
+   * resolved when first used, so they are looked up explicitly before any profiler code runs.
+   */
+  private static boolean isFlightRecorderAvailable() {
+    try {
+      Class.forName("jdk.jfr.FlightRecorder");
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+    return FlightRecorder.isAvailable();
+  }
+
+  /**
+   * Returns whether the request may record the server: the token parameter must match the
+   * configured token, or without one the request must come from this machine
+   */
+  private static boolean mayProfile(HttpServletRequest request) {
+    if (PROFILER_TOKEN_DIGEST == null) {
+      String address = request.getRemoteAddr();
+      return address != null && (address.startsWith("127.") || address.equals("::1")
+          || address.equals("0:0:0:0:0:0:0:1"));
+    }
+    byte[] digest = sha256(request.getParameter("token"));
+    // Comparing fixed-length digests in constant time reveals neither the token nor its length
+    return digest != null && MessageDigest.isEqual(digest, PROFILER_TOKEN_DIGEST);
+  }
+
+  /** Returns the SHA-256 of a token, or null if it is missing or empty. */
+  private static byte[] sha256(String token) {
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new AssertionError(e);
+    }
+  }
+}
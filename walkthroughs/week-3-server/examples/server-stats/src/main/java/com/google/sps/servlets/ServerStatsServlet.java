@@ -14,19 +14,42 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.JvmTelemetry;
 import com.google.sps.data.ServerStats;
-import com.google.gson.Gson;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Date;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Returns server stats and JVM telemetry (GC, memory pools, threads, allocation rate, JIT) as
+ * JSON. Every request also records a sample, at most one per second; ?series=true returns
+ * the recorded samples as time series instead.
+ */
 @WebServlet("/server-stats")
 public final class ServerStatsServlet extends HttpServlet {
 
+  /** One hour of samples at one per second. */
+  private static final int MAX_SAMPLES = 3600;
+
   private final Date startTime = new Date();
+  private final JvmTelemetry telemetry = new JvmTelemetry(MAX_SAMPLES, 1000);
+
+  private static final int BUFFER_SIZE = 4096;
+  /** Larger buffers (from ?series=true) are not kept, so idle threads hold little memory. */
+  private static final int MAX_KEPT_CAPACITY = 64 * 1024;
+
+  /**
+   * Reused by each request thread for its responses, with the chunk they are copied out
+   * through, so a slow client only holds up its own thread.
+   */
+  private static final ThreadLocal<StringBuilder> JSON =
+      ThreadLocal.withInitial(() -> new StringBuilder(BUFFER_SIZE));
+  private static final ThreadLocal<char[]> CHUNK =
+      ThreadLocal.withInitial(() -> new char[BUFFER_SIZE]);
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -34,43 +57,39 @@ public final class ServerStatsServlet extends HttpServlet {
     Date currentTime = new Date();
     long maxMemory = Runtime.getRuntime().maxMemory();
     long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-
-    // Convert the server stats to JSON
-    ServerStats serverStats = new ServerStats(startTime, currentTime, maxMemory, usedMemory);
-    String json = convertToJson(serverStats);
+    telemetry.sampleIfDue(currentTime.getTime());
 
     // Send the JSON as the response
     response.setContentType("application/json;");
-    response.getWriter().println(json);
+    StringBuilder json = JSON.get();
+    json.setLength(0);
+    if (Boolean.parseBoolean(request.getParameter("series"))) {
+      telemetry.writeSeries(json);
+    } else {
+      ServerStats serverStats = new ServerStats(startTime, currentTime, maxMemory, usedMemory);
+      appendJson(json, serverStats);
+    }
+    char[] chunk = CHUNK.get();
+    PrintWriter out = response.getWriter();
+    for (int start = 0; start < json.length(); start += chunk.length) {
+      int end = Math.min(start + chunk.length, json.length());
+      json.getChars(start, end, chunk, 0);
+      out.write(chunk, 0, end - start);
+    }
+    out.println();
+    if (json.capacity() > MAX_KEPT_CAPACITY) {
+      JSON.remove();
+    }
   }
 
-  /**
-   * Converts a ServerStats instance into a JSON string using manual String concatentation.
-   */
-  private String convertToJson(ServerStats serverStats) {
-    String json = "{";
-    json += "\"startTime\": ";
-    json += "\"" + serverStats.getStartTime() + "\"";
-    json += ", ";
-    json += "\"currentTime\": ";
-    json += "\"" + serverStats.getCurrentTime() + "\"";
-    json += ", ";
-    json += "\"maxMemory\": ";
-    json += serverStats.getMaxMemory();
-    json += ", ";
-    json += "\"usedMemory\": ";
-    json += serverStats.getUsedMemory();
-    json += "}";
-    return json;
-  }
-
-  /**
-   * Converts a ServerStats instance into a JSON string using the Gson library. Note: We first added
-   * the Gson library dependency to pom.xml.
-   */
-  private String convertToJsonUsingGson(ServerStats serverStats) {
-    Gson gson = new Gson();
-    String json = gson.toJson(serverStats);
-    return json;
+  /** Appends a ServerStats instance and the current telemetry to a JSON buffer. */
+  private void appendJson(StringBuilder json, ServerStats serverStats) {
+    json.append("{\"startTime\": \"").append(serverStats.getStartTime())
+        .append("\", \"currentTime\": \"").append(serverStats.getCurrentTime())
+        .append("\", \"maxMemory\": ").append(serverStats.getMaxMemory())
+        .append(", \"usedMemory\": ").append(serverStats.getUsedMemory())
+        .append(", ");
+    telemetry.writeSnapshot(json);
+    json.append('}');
   }
 }
@@ -30,6 +30,15 @@ function getServerStats() {
         createListElement('Max memory: ' + stats.maxMemory));
     statsListElement.appendChild(
         createListElement('Used memory: ' + stats.usedMemory));
+    statsListElement.appendChild(
+        createListElement('Threads: ' + stats.threads.count));
+    stats.garbageCollectors.forEach((collector) => {
+      statsListElement.appendChild(createListElement(
+          'GC ' + collector.name + ': ' + collector.count + ' collections, ' +
+          collector.timeMillis + ' ms'));
+    });
+    statsListElement.appendChild(
+        createListElement('JIT compile time: ' + stats.jitTimeMillis + ' ms'));
   });
 }
 
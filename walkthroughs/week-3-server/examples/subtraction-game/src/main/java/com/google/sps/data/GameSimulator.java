@@ -0,0 +1,95 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Plays batches of subtraction games between two strategies on every core (a parallel stream)
+ * and checks the outcomes against the solver: a player following the table who is ever handed
+ * a winning total must go on to win.
+ */
+public final class GameSimulator {
+
+  /** How a simulated player picks a move. */
+  public enum Strategy {
+    /** Plays the solver's winning move when there is one, otherwise a random move. */
+    OPTIMAL,
+    /** Always plays a random move. */
+    RANDOM
+  }
+
+  private static final long FIRST_PLAYER_WON = 1;
+  private static final long TABLE_VIOLATED = 2;
+
+  private GameSimulator() {}
+
+  /**
+   * Plays games between two strategies, the first strategy always moving first
+   * @param solver      the table for the rules being simulated
+   * @param startTotal  the total every game starts from (at most SubtractionSolver.MAX_TOTAL)
+   * @param games       how many games to play
+   * @param first       the strategy of the player who moves first
+   * @param second      the strategy of the other player
+   */
+  public static SimulationResult simulate(
+      SubtractionSolver solver, int startTotal, long games, Strategy first, Strategy second) {
+    long start = System.nanoTime();
+    long[] counts = LongStream.range(0, games)
+        .parallel()
+        .map(game -> play(solver, startTotal, first, second))
+        .collect(() -> new long[2], (totals, outcome) -> {
+          totals[0] += outcome & FIRST_PLAYER_WON;
+          totals[1] += (outcome & TABLE_VIOLATED) >> 1;
+        }, (left, right) -> {
+          left[0] += right[0];
+          left[1] += right[1];
+        });
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    return new SimulationResult(startTotal, solver.getMaxSubtract(), first, second,
+        games, counts[0], counts[1], elapsedMillis);
+  }
+
+  /** Plays one game, returning FIRST_PLAYER_WON and/or TABLE_VIOLATED bits. */
+  private static long play(
+      SubtractionSolver solver, int startTotal, Strategy first, Strategy second) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int maxSubtract = solver.getMaxSubtract();
+    int total = startTotal;
+    // Whether each optimal player has been handed a total the table says they can win from
+    boolean[] handedWin = new boolean[2];
+    int player = 0;
+    while (true) {
+      Strategy strategy = player == 0 ? first : second;
+      int move = 0;
+      if (strategy == Strategy.OPTIMAL) {
+        handedWin[player] |= solver.isWinning(total);
+        move = solver.winningMove(total);
+      }
+      if (move == 0) {
+        move = random.nextInt(1, maxSubtract + 1);
+      }
+      total = Math.max(0, total - move);
+      if (total == 0) {
+        long outcome = player == 0 ? FIRST_PLAYER_WON : 0;
+        // The loser must never have been handed a winning total while following the table
+        return handedWin[1 - player] ? outcome | TABLE_VIOLATED : outcome;
+      }
+      player = 1 - player;
+    }
+  }
+}
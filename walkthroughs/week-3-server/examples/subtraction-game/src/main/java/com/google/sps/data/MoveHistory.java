@@ -0,0 +1,107 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import java.lang.reflect.Type;
+
+/**
+ * Fixed-capacity ring buffer of the most recent moves of a game. Each move is packed into one
+ * int (who moved, how much they subtracted and the new total) and only turned into the
+ * descriptions shown to the player, e.g. "Player 1 subtracted 3", when it is serialized.
+ */
+public final class MoveHistory {
+
+  private static final int COMPUTER_BIT = 1 << 31;
+  private static final int CHOICE_SHIFT = 24;
+  private static final int CHOICE_MASK = 0x7f;
+  private static final int TOTAL_MASK = 0xffffff;
+
+  private final int[] moves;
+  // Index of the oldest move and the number of moves held
+  private int start;
+  private int size;
+
+  /** @param capacity   the most moves kept; older moves are overwritten */
+  public MoveHistory(int capacity) {
+    moves = new int[capacity];
+  }
+
+  /**
+   * Records a move, dropping the oldest one if the buffer is full
+   * @param computer    whether the computer (rather than the player) moved
+   * @param choice      the amount subtracted (at most 127)
+   * @param newTotal    the total after the move (at most 2^24 - 1)
+   */
+  public void add(boolean computer, int choice, int newTotal) {
+    int move = (computer ? COMPUTER_BIT : 0) | (choice << CHOICE_SHIFT) | newTotal;
+    if (size < moves.length) {
+      moves[(start + size) % moves.length] = move;
+      size++;
+    } else {
+      moves[start] = move;
+      start = (start + 1) % moves.length;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isComputer(int index) {
+    return (move(index) & COMPUTER_BIT) != 0;
+  }
+
+  public int choice(int index) {
+    return (move(index) >>> CHOICE_SHIFT) & CHOICE_MASK;
+  }
+
+  public int newTotal(int index) {
+    return move(index) & TOTAL_MASK;
+  }
+
+  private int move(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Move " + index + " of " + size);
+    }
+    return moves[(start + index) % moves.length];
+  }
+
+  /**
+   * Serializes the history as the list of descriptions the page displays, e.g.
+   * ["Player 1 subtracted 3", "New total: 18", ...]
+   */
+  public static final class Serializer implements JsonSerializer<MoveHistory> {
+
+    @Override
+    public JsonElement serialize(MoveHistory history, Type type,
+        JsonSerializationContext context) {
+      JsonArray descriptions = new JsonArray();
+      for (int i = 0; i < history.size(); i++) {
+        String player = history.isComputer(i) ? "Computer" : "Player 1";
+        descriptions.add(player + " subtracted " + history.choice(i));
+        descriptions.add("New total: " + history.newTotal(i));
+        if (history.newTotal(i) == 0) {
+          descriptions.add(player + " won!");
+          descriptions.add(history.isComputer(i) ? "Want a rematch?" : "I want a rematch!");
+        }
+      }
+      return descriptions;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory store of per-session state. Sessions that have not been used for the idle
+ * timeout are evicted by a sweep that runs at most once per timeout, piggybacking on lookups;
+ * when the store is full the least recently used session is dropped to make room.
+ *
+ * @param <T>   the state kept for each session (e.g. a SubtractionGame)
+ */
+public final class SessionStore<T> {
+
+  private final int maxSessions;
+  private final long idleNanos;
+  private final LongSupplier nanoClock;
+  private final ConcurrentMap<String, Session<T>> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong nextSweep;
+
+  /**
+   * @param maxSessions     the most sessions kept in memory
+   * @param idleTimeout     how long an unused session is kept
+   * @param unit            unit of idleTimeout
+   */
+  public SessionStore(int maxSessions, long idleTimeout, TimeUnit unit) {
+    this(maxSessions, unit.toNanos(idleTimeout), System::nanoTime);
+  }
+
+  SessionStore(int maxSessions, long idleNanos, LongSupplier nanoClock) {
+    this.maxSessions = maxSessions;
+    this.idleNanos = idleNanos;
+    this.nanoClock = nanoClock;
+    this.nextSweep = new AtomicLong(nanoClock.getAsLong() + idleNanos);
+  }
+
+  /**
+   * Returns the state of a session, creating it if the session is new or has expired
+   * @param id          the session id
+   * @param factory     creates the state of a new session
+   */
+  public T get(String id, Supplier<T> factory) {
+    long now = nanoClock.getAsLong();
+    sweep(now);
+
+    Session<T> session = sessions.get(id);
+    if (session == null || now - session.lastAccess > idleNanos) {
+      if (session == null && sessions.size() >= maxSessions) {
+        evictLeastRecentlyUsed();
+      }
+      // Another request of the same session may be creating it too; keep whichever wins
+      session = sessions.compute(id, (key, existing) ->
+          existing != null && now - existing.lastAccess <= idleNanos
+              ? existing : new Session<>(factory.get(), now));
+    }
+    session.lastAccess = now;
+    return session.state;
+  }
+
+  /**
+   * Replaces the state of a session (e.g. to start a new game)
+   * @param id      the session id
+   * @param state   the new state
+   */
+  public void put(String id, T state) {
+    long now = nanoClock.getAsLong();
+    if (!sessions.containsKey(id) && sessions.size() >= maxSessions) {
+      evictLeastRecentlyUsed();
+    }
+    sessions.put(id, new Session<>(state, now));
+  }
+
+  /** Returns the number of sessions currently held */
+  public int size() {
+    return sessions.size();
+  }
+
+  /** Drops idle sessions, at most once per idle timeout (the CAS picks one caller to do it) */
+  private void sweep(long now) {
+    long due = nextSweep.get();
+    if (now - due < 0 || !nextSweep.compareAndSet(due, now + idleNanos)) {
+      return;
+    }
+    sessions.values().removeIf(session -> now - session.lastAccess > idleNanos);
+  }
+
+  /** Makes room for a new session; a linear scan, but only when the store is full */
+  private void evictLeastRecentlyUsed() {
+    String oldest = null;
+    long oldestAccess = Long.MAX_VALUE;
+    long now = nanoClock.getAsLong();
+    for (Map.Entry<String, Session<T>> entry : sessions.entrySet()) {
+      long idle = now - entry.getValue().lastAccess;
+      if (oldest == null || idle > now - oldestAccess) {
+        oldest = entry.getKey();
+        oldestAccess = entry.getValue().lastAccess;
+      }
+    }
+    if (oldest != null) {
+      sessions.remove(oldest);
+    }
+  }
+
+  private static final class Session<T> {
+
+    private final T state;
+    private volatile long lastAccess;
+
+    Session(T state, long lastAccess) {
+      this.state = state;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Outcome of a batch of simulated subtraction games.
+ *
+ * <p>Note: The private variables in this class are converted into JSON.
+ */
+public final class SimulationResult {
+
+  private final int startTotal;
+  private final int maxSubtract;
+  private final GameSimulator.Strategy first;
+  private final GameSimulator.Strategy second;
+  private final long games;
+  private final long firstPlayerWins;
+  /** Games an optimal player lost after being handed a winning total; 0 if the table holds. */
+  private final long tableViolations;
+  private final long elapsedMillis;
+
+  public SimulationResult(int startTotal, int maxSubtract, GameSimulator.Strategy first,
+      GameSimulator.Strategy second, long games, long firstPlayerWins, long tableViolations,
+      long elapsedMillis) {
+    this.startTotal = startTotal;
+    this.maxSubtract = maxSubtract;
+    this.first = first;
+    this.second = second;
+    this.games = games;
+    this.firstPlayerWins = firstPlayerWins;
+    this.tableViolations = tableViolations;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public long getGames() {
+    return games;
+  }
+
+  public long getFirstPlayerWins() {
+    return firstPlayerWins;
+  }
+
+  public long getTableViolations() {
+    return tableViolations;
+  }
+}
@@ -14,25 +14,78 @@
 
 package com.google.sps.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.google.gson.annotations.JsonAdapter;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class representing the subtraction game, where players take turns subtracting from 21 to reach 0.
+ * In hard mode the computer plays perfectly using the shared SubtractionSolver table.
  *
  * <p>Note: The private variables in this class are converted into JSON.
  */
 public class SubtractionGame {
 
-  /** List of descriptions of turns, e.g. "Player 1 took 3. New total: 18" */
-  private final List<String> history = new ArrayList<>();
+  /** The most moves kept in the history; a game from 21 never needs more than 21. */
+  private static final int MAX_HISTORY = 32;
+
+  public static final int DEFAULT_TOTAL = 21;
+  public static final int DEFAULT_MAX_SUBTRACT = 3;
+
+  /** Perfect-play table for this game's rules (not serialized). */
+  private final transient SubtractionSolver solver;
+
+  /** The most a player may subtract in one turn. */
+  private final int maxSubtract;
+
+  /** Whether the computer plays perfectly instead of mostly at random. */
+  private final boolean hard;
+
+  /** The recent moves, serialized as descriptions, e.g. "Player 1 subtracted 3" */
+  @JsonAdapter(MoveHistory.Serializer.class)
+  private final MoveHistory history = new MoveHistory(MAX_HISTORY);
 
   /** The total of the current turn. */
-  private int currentTotal = 21;
+  private int currentTotal;
 
   /** Whether this game has ended, i.e. one of the players reached 0. */
   private boolean gameOver = false;
 
+  /** Creates an easy game from 21 where players subtract 1, 2 or 3. */
+  public SubtractionGame() {
+    this(DEFAULT_TOTAL, DEFAULT_MAX_SUBTRACT, false);
+  }
+
+  /**
+   * Creates a game with custom rules
+   * @param startTotal      the total the game starts from
+   * @param maxSubtract     the most a player may subtract in one turn
+   * @param hard            whether the computer plays perfectly
+   */
+  public SubtractionGame(int startTotal, int maxSubtract, boolean hard) {
+    if (startTotal < 1 || startTotal > SubtractionSolver.MAX_TOTAL) {
+      throw new IllegalArgumentException("Invalid starting total: " + startTotal);
+    }
+    this.solver = SubtractionSolver.forMaxSubtract(maxSubtract);
+    this.maxSubtract = maxSubtract;
+    this.hard = hard;
+    this.currentTotal = startTotal;
+  }
+
+  /** Returns the most a player may subtract in one turn. */
+  public int getMaxSubtract() {
+    return maxSubtract;
+  }
+
+  /** Returns whether the computer plays perfectly. */
+  public boolean isHard() {
+    return hard;
+  }
+
+  /** Returns whether no one has moved yet. */
+  public boolean isNew() {
+    return history.size() == 0;
+  }
+
   /** Returns whether this game has ended. */
   public boolean isGameOver() {
     return gameOver;
@@ -44,12 +97,10 @@ public class SubtractionGame {
     if (currentTotal < 0) {
       currentTotal = 0;
     }
-    logMove("Player 1", playerChoice, currentTotal);
+    history.add(false, playerChoice, currentTotal);
 
     if (currentTotal == 0) {
       // Player 1 won
-      history.add("Player 1 won!");
-      history.add("I want a rematch!");
       gameOver = true;
     } else {
       takeComputerTurn();
@@ -58,28 +109,24 @@ public class SubtractionGame {
 
   private void takeComputerTurn() {
     int computerChoice;
-    if (currentTotal <= 3) {
-      // If the current total is 1, 2, or 3, then the computer can win this turn
+    if (currentTotal <= maxSubtract) {
+      // If the current total is at most maxSubtract, then the computer can win this turn
       // by subtracting the current total.
       computerChoice = currentTotal;
+    } else if (hard && solver.isWinning(currentTotal)) {
+      // Leave the player a total they cannot win from, however they play.
+      computerChoice = solver.winningMove(currentTotal);
     } else {
-      // The computer can't win this turn,
-      // so generate a random number between 1 and 3 inclusive.
-      computerChoice = 1 + (int) (Math.random() * 3);
+      // The computer can't win this turn (or can't force a win),
+      // so generate a random number between 1 and maxSubtract inclusive.
+      computerChoice = ThreadLocalRandom.current().nextInt(1, maxSubtract + 1);
     }
 
     currentTotal -= computerChoice;
-    logMove("Computer", computerChoice, currentTotal);
+    history.add(true, computerChoice, currentTotal);
 
     if (currentTotal == 0) {
-      history.add("Computer won!");
-      history.add("Want a rematch?");
       gameOver = true;
     }
   }
-
-  private void logMove(String player, int choice, int newTotal) {
-    history.add(player + " subtracted " + choice);
-    history.add("New total: " + newTotal);
-  }
 }
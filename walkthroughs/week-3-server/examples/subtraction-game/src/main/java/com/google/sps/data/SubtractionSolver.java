@@ -0,0 +1,83 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Perfect-play table for the subtraction game with a given maximum subtraction, covering every
+ * total up to MAX_TOTAL (the table for a smaller starting total is a prefix of it). Built once
+ * per maximum subtraction by dynamic programming and shared read-only by every game using it,
+ * so at most 127 tables of MAX_TOTAL bytes ever exist.
+ */
+public final class SubtractionSolver {
+
+  /** The largest total any table covers. */
+  public static final int MAX_TOTAL = 100_000;
+
+  // solvers[maxSubtract] is built on first use
+  private static final AtomicReferenceArray<SubtractionSolver> solvers =
+      new AtomicReferenceArray<>(Byte.MAX_VALUE + 1);
+
+  private final int maxSubtract;
+  // winningMoves[t] is a move that leaves the opponent in a losing position, or 0 if t is lost
+  private final byte[] winningMoves;
+
+  private SubtractionSolver(int maxSubtract) {
+    this.maxSubtract = maxSubtract;
+    winningMoves = new byte[MAX_TOTAL + 1];
+    // A total of 0 means the previous player just won, so it is lost for the player to move
+    for (int total = 1; total <= MAX_TOTAL; total++) {
+      for (int move = 1; move <= maxSubtract; move++) {
+        int left = Math.max(0, total - move);
+        if (left == 0 || winningMoves[left] == 0) {
+          winningMoves[total] = (byte) move;
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the shared table for a maximum subtraction, building it on first use
+   * @param maxSubtract     the most a player may subtract in one turn (1 to 127)
+   */
+  public static SubtractionSolver forMaxSubtract(int maxSubtract) {
+    if (maxSubtract < 1 || maxSubtract > Byte.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid rules: subtract up to " + maxSubtract);
+    }
+    SubtractionSolver solver = solvers.get(maxSubtract);
+    if (solver == null) {
+      // Racing callers may build the same table twice; one of them is kept
+      solvers.compareAndSet(maxSubtract, null, new SubtractionSolver(maxSubtract));
+      solver = solvers.get(maxSubtract);
+    }
+    return solver;
+  }
+
+  public int getMaxSubtract() {
+    return maxSubtract;
+  }
+
+  /** Returns whether the player to move can force a win from this total. */
+  public boolean isWinning(int total) {
+    return winningMoves[total] != 0;
+  }
+
+  /** Returns a move that forces a win from this total, or 0 if every move loses. */
+  public int winningMove(int total) {
+    return winningMoves[total];
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.GameSimulator;
+import com.google.sps.data.SimulationResult;
+import com.google.sps.data.SubtractionGame;
+import com.google.sps.data.SubtractionSolver;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Locale;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that plays a batch of simulated games to validate the solver's strategy table, e.g.
+ * /subtraction-simulation?games=100000&total=21&max=3&first=optimal&second=random
+ * The batch runs on every core, so its size is capped by the number of moves it can take
+ * (games times starting total) to keep any one request short.
+ */
+@WebServlet("/subtraction-simulation")
+public final class SimulationServlet extends HttpServlet {
+
+  private static final int DEFAULT_GAMES = 100_000;
+  private static final int MAX_GAMES = 1_000_000;
+  // A game never takes more moves than its starting total
+  private static final long MAX_MOVES = 20_000_000;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    int games;
+    int total;
+    int maxSubtract;
+    GameSimulator.Strategy first;
+    GameSimulator.Strategy second;
+    try {
+      games = parseInt(request.getParameter("games"), DEFAULT_GAMES);
+      total = parseInt(request.getParameter("total"), SubtractionGame.DEFAULT_TOTAL);
+      maxSubtract = parseInt(request.getParameter("max"), SubtractionGame.DEFAULT_MAX_SUBTRACT);
+      first = parseStrategy(request.getParameter("first"), GameSimulator.Strategy.OPTIMAL);
+      second = parseStrategy(request.getParameter("second"), GameSimulator.Strategy.RANDOM);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    if (games < 1 || games > MAX_GAMES || total < 1 || total > SubtractionSolver.MAX_TOTAL
+        || maxSubtract < 1 || maxSubtract > Byte.MAX_VALUE) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Please enter games up to "
+          + MAX_GAMES + ", a total up to " + SubtractionSolver.MAX_TOTAL
+          + " and a max between 1 and 127.");
+      return;
+    }
+    if ((long) games * total > MAX_MOVES) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Please keep games times total at or below " + MAX_MOVES + ".");
+      return;
+    }
+
+    SubtractionSolver solver = SubtractionSolver.forMaxSubtract(maxSubtract);
+    SimulationResult result = GameSimulator.simulate(solver, total, games, first, second);
+
+    response.setContentType("application/json");
+    response.getWriter().println(new Gson().toJson(result));
+  }
+
+  private static int parseInt(String value, int defaultValue) {
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  private static GameSimulator.Strategy parseStrategy(
+      String value, GameSimulator.Strategy defaultValue) {
+    return value == null
+        ? defaultValue : GameSimulator.Strategy.valueOf(value.toUpperCase(Locale.ROOT));
+  }
+}
@@ -14,32 +14,52 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.SessionStore;
 import com.google.sps.data.SubtractionGame;
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that encapsulates the subtraction game. */
+/** Servlet that encapsulates the subtraction game. Each visitor plays their own game. */
 @WebServlet("/subtraction-game")
 public final class SubtractionServlet extends HttpServlet {
 
-  private SubtractionGame game = new SubtractionGame();
+  private static final String SESSION_COOKIE = "subtraction-session";
+
+  /** Games by session id; abandoned games are dropped after 30 idle minutes. */
+  private final SessionStore<SubtractionGame> games =
+      new SessionStore<>(10_000, 30, TimeUnit.MINUTES);
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    SubtractionGame game = games.get(getSessionId(request, response), SubtractionGame::new);
+
     response.setContentType("application/json");
-    String json = new Gson().toJson(game);
+    String json;
+    synchronized (game) {
+      json = new Gson().toJson(game);
+    }
     response.getWriter().println(json);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String sessionId = getSessionId(request, response);
+    SubtractionGame game = games.get(sessionId, SubtractionGame::new);
+
     // If the user sends another POST request after the game is over, then start a new game.
-    if (game.isGameOver()) {
-      game = new SubtractionGame();
+    // The difficulty can only be picked before the first move.
+    boolean hard = request.getParameter("hard") != null;
+    if (game.isGameOver() || (game.isNew() && game.isHard() != hard)) {
+      game = new SubtractionGame(
+          SubtractionGame.DEFAULT_TOTAL, SubtractionGame.DEFAULT_MAX_SUBTRACT, hard);
+      games.put(sessionId, game);
     }
 
     // Get the input from the form.
@@ -50,12 +70,36 @@ public final class SubtractionServlet extends HttpServlet {
       return;
     }
 
-    game.takePlayerTurn(playerChoice);
+    // The same visitor may submit twice before the first request finishes
+    synchronized (game) {
+      if (!game.isGameOver()) {
+        game.takePlayerTurn(playerChoice);
+      }
+    }
 
     // Redirect back to the HTML page.
     response.sendRedirect("/index.html");
   }
 
+  /** Returns the visitor's session id, issuing a new session cookie on their first request. */
+  private String getSessionId(HttpServletRequest request, HttpServletResponse response) {
+    Cookie[] cookies = request.getCookies();
+    if (cookies != null) {
+      for (Cookie cookie : cookies) {
+        if (cookie.getName().equals(SESSION_COOKIE)) {
+          return cookie.getValue();
+        }
+      }
+    }
+
+    String sessionId = UUID.randomUUID().toString();
+    Cookie cookie = new Cookie(SESSION_COOKIE, sessionId);
+    cookie.setPath("/");
+    cookie.setHttpOnly(true);
+    response.addCookie(cookie);
+    return sessionId;
+  }
+
   /** Returns the choice entered by the player, or -1 if the choice was invalid. */
   private int getPlayerChoice(HttpServletRequest request) {
     // Get the input from the form.
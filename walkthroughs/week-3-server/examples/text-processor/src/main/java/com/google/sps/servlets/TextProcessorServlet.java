@@ -14,40 +14,158 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.text.ExternalSorter;
+import com.google.sps.text.WordCounter;
+import com.google.sps.text.WordTokenizer;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that processes text. */
+/**
+ * Servlet that processes text. Besides the form, it accepts a raw text/plain request body of
+ * any size (options in the query string, e.g. POST /text?sort=true): the body is split into
+ * words as it is read, and sorting spills to disk once the words outgrow the memory budget.
+ *
+ * <p>The mode parameter picks the processing: sort, parallel-sort (Arrays.parallelSort),
+ * distinct (sorted, without duplicates) or top (the top-n most frequent words with counts).
+ */
 @WebServlet("/text")
 public final class TextProcessorServlet extends HttpServlet {
 
+  /** Roughly how many bytes of words are sorted in memory before spilling to disk. */
+  private static final long SORT_MEMORY_BUDGET = 16 * 1024 * 1024;
+
+  /** The accepted modes; empty prints the words as they come. */
+  private static final Set<String> MODES = Collections.unmodifiableSet(
+      new HashSet<>(Arrays.asList("", "sort", "parallel-sort", "distinct", "top")));
+
+  private static final int DEFAULT_TOP_N = 10;
+  private static final int MAX_TOP_N = 1000;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // Get the input from the form.
-    String text = getParameter(request, "text-input", "");
+    // Get the input from the form, or stream it from the request body.
     boolean upperCase = Boolean.parseBoolean(getParameter(request, "upper-case", "false"));
     boolean sort = Boolean.parseBoolean(getParameter(request, "sort", "false"));
-
-    // Convert the text to upper case.
-    if (upperCase) {
-      text = text.toUpperCase();
+    String mode = getParameter(request, "mode", "");
+    if (mode.isEmpty() && sort) {
+      mode = "sort";
+    }
+    if (!MODES.contains(mode)) {
+      response.setContentType("text/html");
+      response.getWriter().println("Please choose a valid mode.");
+      return;
     }
+    // top-n only applies to the top mode, so other modes ignore whatever the form sent
+    int topN = DEFAULT_TOP_N;
+    if (mode.equals("top")) {
+      try {
+        topN = Integer.parseInt(getParameter(request, "top-n", String.valueOf(DEFAULT_TOP_N)));
+      } catch (NumberFormatException e) {
+        topN = -1;
+      }
+      if (topN < 1 || topN > MAX_TOP_N) {
+        response.setContentType("text/html");
+        response.getWriter().println("Please choose a top-n between 1 and " + MAX_TOP_N + ".");
+        return;
+      }
+    }
+    Reader input = isFormSubmission(request)
+        ? new StringReader(getParameter(request, "text-input", ""))
+        : request.getReader();
 
     // Break the text into individual words.
-    String[] words = text.split("\\s*,\\s*");
+    WordTokenizer words = new WordTokenizer(input);
 
-    // Sort the words.
-    if (sort) {
-      Arrays.sort(words);
+    // Respond with the result, in the format of Arrays.toString.
+    response.setContentType("text/html;");
+    PrintWriter out = response.getWriter();
+    out.print('[');
+    switch (mode) {
+      case "sort":
+        printSorted(words, upperCase, false, false, out);
+        break;
+      case "parallel-sort":
+        printSorted(words, upperCase, true, false, out);
+        break;
+      case "distinct":
+        printSorted(words, upperCase, true, true, out);
+        break;
+      case "top":
+        WordCounter counter = new WordCounter();
+        counter.countAll(words, word -> convert(word, upperCase));
+        boolean firstCount = true;
+        for (Map.Entry<String, Long> count : counter.top(topN)) {
+          printWord(out, count.getKey() + "=" + count.getValue(), firstCount);
+          firstCount = false;
+        }
+        break;
+      default:
+        boolean first = true;
+        for (String word = words.next(); word != null; word = words.next()) {
+          printWord(out, convert(word, upperCase), first);
+          first = false;
+        }
     }
+    out.println(']');
+  }
 
-    // Respond with the result.
-    response.setContentType("text/html;");
-    response.getWriter().println(Arrays.toString(words));
+  /**
+   * Prints the words in sorted order, spilling to disk when they outgrow the memory budget
+   * @param words       the words to sort
+   * @param upperCase   whether to upper-case the words first
+   * @param parallel    whether to sort with Arrays.parallelSort
+   * @param distinct    whether to print each word only once
+   * @param out         where the words are printed
+   */
+  private static void printSorted(WordTokenizer words, boolean upperCase, boolean parallel,
+      boolean distinct, PrintWriter out) throws IOException {
+    try (ExternalSorter sorter = new ExternalSorter(SORT_MEMORY_BUDGET, null, parallel)) {
+      for (String word = words.next(); word != null; word = words.next()) {
+        sorter.add(convert(word, upperCase));
+      }
+      Iterator<String> sorted = sorter.sorted();
+      String previous = null;
+      while (sorted.hasNext()) {
+        String word = sorted.next();
+        // Duplicates are adjacent once sorted
+        if (!distinct || !word.equals(previous)) {
+          printWord(out, word, previous == null);
+        }
+        previous = word;
+      }
+    }
+  }
+
+  /** Converts a word to upper case if requested. */
+  private static String convert(String word, boolean upperCase) {
+    return upperCase ? word.toUpperCase() : word;
+  }
+
+  private static void printWord(PrintWriter out, String word, boolean first) {
+    if (!first) {
+      out.print(", ");
+    }
+    out.print(word);
+  }
+
+  /** Returns whether the words are in the text-input form field rather than the raw body. */
+  private static boolean isFormSubmission(HttpServletRequest request) {
+    String contentType = request.getContentType();
+    return contentType == null
+        || contentType.startsWith("application/x-www-form-urlencoded")
+        || contentType.startsWith("multipart/form-data");
   }
 
   /**
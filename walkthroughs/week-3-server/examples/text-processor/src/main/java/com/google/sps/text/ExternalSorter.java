@@ -0,0 +1,197 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts any number of words in bounded memory. Words are buffered until they exceed the memory
+ * budget, then the buffer is sorted and spilled to a temporary file as one sorted run; reading
+ * the result merges the runs with a priority queue holding one word per run. Each buffer can be
+ * sorted on every core with Arrays.parallelSort.
+ */
+public final class ExternalSorter implements Closeable {
+
+  // Rough heap cost of a String in bytes: object headers and fields plus two bytes per char
+  private static final int STRING_OVERHEAD = 56;
+  private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+  private final long memoryBudget;
+  private final File tempDir;
+  private final boolean parallel;
+  private final List<String> buffer = new ArrayList<>();
+  private long bufferedBytes;
+  private final List<File> runs = new ArrayList<>();
+  private final List<Closeable> openRuns = new ArrayList<>();
+
+  /**
+   * @param memoryBudget    roughly how many bytes of words to hold before spilling to disk
+   * @param tempDir         where sorted runs are written, or null for java.io.tmpdir
+   * @param parallel        whether to sort each buffer with Arrays.parallelSort
+   */
+  public ExternalSorter(long memoryBudget, File tempDir, boolean parallel) {
+    this.memoryBudget = memoryBudget;
+    this.tempDir = tempDir;
+    this.parallel = parallel;
+  }
+
+  /** Adds a word, spilling the buffered words to disk if they exceed the memory budget. */
+  public void add(String word) throws IOException {
+    buffer.add(word);
+    bufferedBytes += STRING_OVERHEAD + 2L * word.length();
+    if (bufferedBytes > memoryBudget) {
+      spill();
+    }
+  }
+
+  /** Returns the number of sorted runs written to disk so far. */
+  public int getSpilledRuns() {
+    return runs.size();
+  }
+
+  /**
+   * Returns every added word in natural String order. Call at most once, after the last add;
+   * the iterator reads from the spilled runs until this sorter is closed.
+   */
+  public Iterator<String> sorted() throws IOException {
+    if (runs.isEmpty()) {
+      return sortBuffer().iterator();
+    }
+    if (!buffer.isEmpty()) {
+      spill();
+    }
+
+    PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), (a, b) -> a.head.compareTo(b.head));
+    for (File file : runs) {
+      Run run = new Run(file);
+      openRuns.add(run);
+      if (run.advance()) {
+        queue.add(run);
+      }
+    }
+    return new Iterator<String>() {
+      @Override
+      public boolean hasNext() {
+        return !queue.isEmpty();
+      }
+
+      @Override
+      public String next() {
+        Run run = queue.poll();
+        if (run == null) {
+          throw new NoSuchElementException();
+        }
+        String word = run.head;
+        try {
+          if (run.advance()) {
+            queue.add(run);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return word;
+      }
+    };
+  }
+
+  /** Closes and deletes the spilled runs. */
+  @Override
+  public void close() throws IOException {
+    for (Closeable run : openRuns) {
+      run.close();
+    }
+    for (File file : runs) {
+      file.delete();
+    }
+  }
+
+  /** Sorts the buffered words and writes them out as one run. */
+  private void spill() throws IOException {
+    List<String> sorted = sortBuffer();
+    File file = File.createTempFile("text-sort-", ".run", tempDir);
+    runs.add(file);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file), FILE_BUFFER_SIZE))) {
+      for (String word : sorted) {
+        // writeUTF is limited to 64KB, so words are written as length-prefixed UTF-8
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+    buffer.clear();
+    bufferedBytes = 0;
+  }
+
+  private List<String> sortBuffer() {
+    if (!parallel) {
+      Collections.sort(buffer);
+      return buffer;
+    }
+    String[] words = buffer.toArray(new String[0]);
+    Arrays.parallelSort(words);
+    return Arrays.asList(words);
+  }
+
+  /** A spilled run being merged; head is its smallest word not yet returned. */
+  private static final class Run implements Closeable {
+
+    private final DataInputStream in;
+    private String head;
+
+    Run(File file) throws IOException {
+      in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file), FILE_BUFFER_SIZE));
+    }
+
+    /** Reads the next word into head, returning false at the end of the run. */
+    boolean advance() throws IOException {
+      int length;
+      try {
+        length = in.readInt();
+      } catch (EOFException e) {
+        head = null;
+        return false;
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      head = new String(bytes, StandardCharsets.UTF_8);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
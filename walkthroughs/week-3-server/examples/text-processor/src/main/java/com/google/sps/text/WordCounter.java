@@ -0,0 +1,111 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Counts how often each word occurs. The tokenizer is read on the calling thread and handed
+ * out in chunks that are counted on the common fork-join pool, into a concurrent map of
+ * LongAdders so the workers never block each other.
+ */
+public final class WordCounter {
+
+  private static final int CHUNK_SIZE = 4096;
+
+  /** Highest count first, then alphabetical. */
+  private static final Comparator<Map.Entry<String, Long>> BY_FREQUENCY =
+      Comparator.<Map.Entry<String, Long>>comparingLong(Map.Entry::getValue).reversed()
+          .thenComparing(Map.Entry::getKey);
+
+  private final ConcurrentMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+  /**
+   * Counts every word of the input
+   * @param words       the words to count
+   * @param convert     applied to each word before counting (e.g. upper-casing)
+   */
+  public void countAll(WordTokenizer words, UnaryOperator<String> convert) throws IOException {
+    // Bounds the chunks waiting to be counted, and so the memory they hold
+    int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+    Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+
+    List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+    for (String word = words.next(); word != null; word = words.next()) {
+      chunk.add(convert.apply(word));
+      if (chunk.size() == CHUNK_SIZE) {
+        if (inFlight.size() == maxInFlight) {
+          inFlight.removeFirst().join();
+        }
+        List<String> full = chunk;
+        inFlight.addLast(CompletableFuture.runAsync(() -> count(full)));
+        chunk = new ArrayList<>(CHUNK_SIZE);
+      }
+    }
+    // Small inputs never fill a chunk and are counted right here
+    count(chunk);
+    for (CompletableFuture<Void> future : inFlight) {
+      future.join();
+    }
+  }
+
+  /** Returns the number of distinct words counted. */
+  public int size() {
+    return counts.size();
+  }
+
+  /**
+   * Returns the most frequent words, most frequent first (ties in alphabetical order)
+   * @param n   how many words to return
+   */
+  public List<Map.Entry<String, Long>> top(int n) {
+    // Min-heap of the best n so far: its head is the first entry to give up its place
+    PriorityQueue<Map.Entry<String, Long>> heap =
+        new PriorityQueue<>(n + 1, BY_FREQUENCY.reversed());
+    for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+      heap.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+      if (heap.size() > n) {
+        heap.poll();
+      }
+    }
+    List<Map.Entry<String, Long>> top = new ArrayList<>(heap);
+    top.sort(BY_FREQUENCY);
+    return top;
+  }
+
+  private void count(List<String> words) {
+    for (String word : words) {
+      // On Java 8 computeIfAbsent locks the bin even when the word is already there
+      LongAdder count = counts.get(word);
+      if (count == null) {
+        count = counts.computeIfAbsent(word, key -> new LongAdder());
+      }
+      count.increment();
+    }
+  }
+}
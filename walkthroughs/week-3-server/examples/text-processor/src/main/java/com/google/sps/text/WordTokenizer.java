@@ -0,0 +1,109 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits comma-separated text into words while reading it, so the input never has to be held
+ * in memory as a whole. Whitespace around each word is dropped and, like String.split, empty
+ * words are kept except at the end of the input.
+ */
+public final class WordTokenizer {
+
+  private final Reader in;
+  private final char[] buffer = new char[8192];
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  private final StringBuilder word = new StringBuilder();
+  // Empty words seen but not yet returned, and the word that ended the run of empty words
+  private int pendingEmptyWords;
+  private String pendingWord;
+
+  /** @param in   the text to split (read incrementally, not closed) */
+  public WordTokenizer(Reader in) {
+    this.in = in;
+  }
+
+  /** Returns the next word, or null once the input is exhausted. */
+  public String next() throws IOException {
+    if (pendingEmptyWords > 0) {
+      pendingEmptyWords--;
+      return "";
+    }
+    if (pendingWord != null) {
+      String next = pendingWord;
+      pendingWord = null;
+      return next;
+    }
+
+    String next;
+    while ((next = readWord()) != null && next.isEmpty()) {
+      pendingEmptyWords++;
+    }
+    if (next == null) {
+      // Trailing empty words are dropped
+      pendingEmptyWords = 0;
+      return null;
+    }
+    if (pendingEmptyWords > 0) {
+      pendingWord = next;
+      pendingEmptyWords--;
+      return "";
+    }
+    return next;
+  }
+
+  /** Reads up to the next comma, returning the trimmed word, or null at the end of input. */
+  private String readWord() throws IOException {
+    if (endOfInput) {
+      return null;
+    }
+    word.setLength(0);
+    // Length of the word without trailing whitespace
+    int length = 0;
+    while (true) {
+      if (position == limit && !fill()) {
+        endOfInput = true;
+        return word.substring(0, length);
+      }
+      char c = buffer[position++];
+      if (c == ',') {
+        return word.substring(0, length);
+      }
+      boolean whitespace = Character.isWhitespace(c);
+      if (word.length() == 0 && whitespace) {
+        continue;
+      }
+      word.append(c);
+      if (!whitespace) {
+        length = word.length();
+      }
+    }
+  }
+
+  private boolean fill() throws IOException {
+    int read = in.read(buffer);
+    if (read <= 0) {
+      return false;
+    }
+    position = 0;
+    limit = read;
+    return true;
+  }
+}
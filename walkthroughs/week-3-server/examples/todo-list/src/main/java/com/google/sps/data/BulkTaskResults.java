@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a bulk create or delete: one item per requested task, in request order.
+ *
+ * <p>Note: The private variables in this class are converted into JSON.
+ */
+public final class BulkTaskResults {
+
+  private int succeeded;
+  private int failed;
+  private int unknown;
+  private final List<Item> results;
+
+  public BulkTaskResults(int size) {
+    results = new ArrayList<>(size);
+  }
+
+  /** Records a task that was created (title set) or deleted. */
+  public void succeeded(long id, String title) {
+    succeeded++;
+    results.add(new Item(id, title, null, null));
+  }
+
+  /**
+   * Records a task that could not be created or deleted
+   * @param id      the id of the task, or null if it has none
+   * @param title   the title of the task to create, or null
+   * @param error   why it failed
+   */
+  public void failed(Long id, String title, String error) {
+    failed++;
+    results.add(new Item(id, title, error, null));
+  }
+
+  /**
+   * Records a task whose write timed out, so it may or may not have been created or deleted
+   * @param id      the id of the task, or null if it has none
+   * @param title   the title of the task to create, or null
+   * @param error   the timeout
+   */
+  public void unknown(Long id, String title, String error) {
+    unknown++;
+    results.add(new Item(id, title, error, true));
+  }
+
+  /** The result for one task; absent fields are left out of the JSON. */
+  private static final class Item {
+
+    private final Long id;
+    private final String title;
+    private final String error;
+    // True if the outcome is unknown
+    private final Boolean unknown;
+
+    Item(Long id, String title, String error, Boolean unknown) {
+      this.id = id;
+      this.title = title;
+      this.error = error;
+      this.unknown = unknown;
+    }
+  }
+}
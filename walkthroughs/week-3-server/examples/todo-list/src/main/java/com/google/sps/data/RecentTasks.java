@@ -0,0 +1,194 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The newest tasks, kept in memory in list order so the first pages of the task list need no
+ * Datastore query. Loaded from Datastore on first use and kept up to date by the servlets that
+ * add and delete tasks. It always holds every task from the newest down to its oldest entry,
+ * so any page inside that range can be served from memory. Reloaded every minute, since other
+ * instances change tasks too; the reload query runs without holding the lock, and tasks added
+ * or deleted meanwhile are applied to its result.
+ */
+public final class RecentTasks {
+
+  /** The most tasks kept in memory; also the largest page size. */
+  public static final int CAPACITY = 200;
+
+  private static final RecentTasks instance =
+      new RecentTasks(CAPACITY, TimeUnit.MINUTES.toNanos(1), System::nanoTime);
+
+  private final int capacity;
+  private final long maxAgeNanos;
+  private final LongSupplier clock;
+
+  // In list order (see TaskCursor); guarded by this
+  private final List<Task> tasks = new ArrayList<>();
+  // Whether tasks holds every task, not just the newest
+  private boolean complete;
+  private boolean loaded;
+  private long loadedAt;
+  // Whether a thread is running the reload query, and the changes made while it runs
+  private boolean loading;
+  private final List<Task> addedWhileLoading = new ArrayList<>();
+  private final Set<Long> removedWhileLoading = new HashSet<>();
+
+  RecentTasks(int capacity, long maxAgeNanos, LongSupplier clock) {
+    this.capacity = capacity;
+    this.maxAgeNanos = maxAgeNanos;
+    this.clock = clock;
+  }
+
+  public static RecentTasks getInstance() {
+    return instance;
+  }
+
+  /**
+   * Adds a task that has just been stored
+   * @param task    the new task
+   */
+  public synchronized void add(Task task) {
+    if (loading) {
+      addedWhileLoading.add(task);
+      removedWhileLoading.remove(task.getId());
+    }
+    if (loaded) {
+      insert(task);
+    }
+  }
+
+  private void insert(Task task) {
+    removeTask(task.getId());
+    int index = indexAfter(task.getTimestamp(), task.getId());
+    if (index == tasks.size() && !complete) {
+      // Older than every cached task; uncached tasks may come before it
+      return;
+    }
+    tasks.add(index, task);
+    if (tasks.size() > capacity) {
+      tasks.remove(tasks.size() - 1);
+      complete = false;
+    }
+  }
+
+  /**
+   * Removes a deleted task (no-op if it is not cached)
+   * @param id  the id of the deleted task
+   */
+  public synchronized void remove(long id) {
+    if (loading) {
+      addedWhileLoading.removeIf(task -> task.getId() == id);
+      removedWhileLoading.add(id);
+    }
+    removeTask(id);
+  }
+
+  /**
+   * Returns a page of tasks from memory, loading the cache if needed, or null if the page
+   * reaches past the cached tasks and has to be queried
+   * @param after   the cursor of the page, or null for the first page
+   * @param limit   the maximum number of tasks on the page
+   */
+  public TaskPage page(TaskCursor after, int limit) {
+    loadIfStale();
+    synchronized (this) {
+      if (!loaded) {
+        // The first load is still running on another thread
+        return null;
+      }
+      int start = after == null ? 0 : indexAfter(after.getTimestamp(), after.getId());
+      int end = Math.min(start + limit, tasks.size());
+      if (end - start < limit && !complete) {
+        return null;
+      }
+
+      List<Task> page = new ArrayList<>(tasks.subList(start, end));
+      boolean more = end < tasks.size() || !complete;
+      String nextCursor = more && !page.isEmpty()
+          ? TaskCursor.after(page.get(page.size() - 1)).toString() : null;
+      return new TaskPage(page, nextCursor);
+    }
+  }
+
+  /**
+   * Reloads the newest tasks if the cache is old or deletes have shrunk it. The query runs
+   * outside the lock, so other callers keep using the cache (or query themselves) meanwhile.
+   */
+  private void loadIfStale() {
+    synchronized (this) {
+      if (loading || (loaded && clock.getAsLong() - loadedAt <= maxAgeNanos
+          && (complete || tasks.size() >= capacity / 2))) {
+        return;
+      }
+      loading = true;
+      addedWhileLoading.clear();
+      removedWhileLoading.clear();
+    }
+    TaskPage newest;
+    try {
+      newest = TaskQuery.page(DatastoreServiceFactory.getDatastoreService(), null, capacity);
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        loading = false;
+      }
+      throw e;
+    }
+
+    synchronized (this) {
+      tasks.clear();
+      tasks.addAll(newest.getTasks());
+      complete = newest.getNextCursor() == null;
+      loaded = true;
+      loading = false;
+      loadedAt = clock.getAsLong();
+      // The query may have missed these changes
+      for (long id : removedWhileLoading) {
+        removeTask(id);
+      }
+      for (Task task : addedWhileLoading) {
+        insert(task);
+      }
+      addedWhileLoading.clear();
+      removedWhileLoading.clear();
+    }
+  }
+
+  /** Returns the index of the first task after a list position (binary search). */
+  private int indexAfter(long timestamp, long id) {
+    int low = 0;
+    int high = tasks.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (TaskCursor.compare(timestamp, id, tasks.get(middle)) < 0) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  private void removeTask(long id) {
+    tasks.removeIf(task -> task.getId() == id);
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * A position in the task list (newest first, ties by id), encoded in page links as
+ * "timestamp-id" of the last task on the previous page. Unlike an offset it stays correct when
+ * tasks are added or deleted between pages.
+ */
+public final class TaskCursor {
+
+  private final long timestamp;
+  private final long id;
+
+  private TaskCursor(long timestamp, long id) {
+    this.timestamp = timestamp;
+    this.id = id;
+  }
+
+  /** Returns the cursor for the page that follows a task. */
+  public static TaskCursor after(Task task) {
+    return new TaskCursor(task.getTimestamp(), task.getId());
+  }
+
+  /**
+   * Parses a cursor from a page link
+   * @throws IllegalArgumentException if the cursor is malformed
+   */
+  public static TaskCursor parse(String cursor) {
+    int separator = cursor.indexOf('-', 1);
+    if (separator < 0) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+    try {
+      return new TaskCursor(Long.parseLong(cursor.substring(0, separator)),
+          Long.parseLong(cursor.substring(separator + 1)));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * Compares two list positions in list order: newer first, then by id, which is the order
+   * Datastore returns for a descending timestamp sort
+   */
+  static int compare(long timestamp, long id, Task task) {
+    int byTimestamp = Long.compare(task.getTimestamp(), timestamp);
+    return byTimestamp != 0 ? byTimestamp : Long.compare(id, task.getId());
+  }
+
+  @Override
+  public String toString() {
+    return timestamp + "-" + id;
+  }
+}
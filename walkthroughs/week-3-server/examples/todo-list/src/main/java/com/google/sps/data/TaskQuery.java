@@ -0,0 +1,101 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads pages of the task list from Datastore with keys-only queries on the built-in timestamp
+ * index, then one batch get for the page's tasks. A page after a cursor is read in two parts,
+ * each limited to the page size: the tasks that share the cursor's timestamp and sort after it
+ * by key, then older tasks. Many tasks with the same timestamp, e.g. from a bulk import,
+ * therefore cost no more to page through than any others.
+ */
+public final class TaskQuery {
+
+  private TaskQuery() {}
+
+  /**
+   * Returns the tasks after a cursor, newest first
+   * @param datastore   the Datastore to query
+   * @param after       the cursor of the page, or null for the first page
+   * @param limit       the maximum number of tasks on the page
+   */
+  public static TaskPage page(DatastoreService datastore, TaskCursor after, int limit) {
+    // One more than the page is read to know whether there is a next page
+    List<Key> keys = new ArrayList<>(limit + 1);
+    FetchOptions options = FetchOptions.Builder.withLimit(limit + 1);
+
+    if (after != null) {
+      // An equality filter plus a key range: ties come back in key order
+      Query ties = new Query("Task")
+          .setFilter(CompositeFilterOperator.and(
+              new FilterPredicate("timestamp", FilterOperator.EQUAL, after.getTimestamp()),
+              new FilterPredicate(Entity.KEY_RESERVED_PROPERTY, FilterOperator.GREATER_THAN,
+                  KeyFactory.createKey("Task", after.getId()))))
+          .setKeysOnly();
+      for (Entity entity : datastore.prepare(ties).asList(options)) {
+        keys.add(entity.getKey());
+      }
+    }
+
+    if (keys.size() <= limit) {
+      Query older = new Query("Task")
+          .addSort("timestamp", SortDirection.DESCENDING)
+          .setKeysOnly();
+      if (after != null) {
+        older.setFilter(
+            new FilterPredicate("timestamp", FilterOperator.LESS_THAN, after.getTimestamp()));
+      }
+      options = FetchOptions.Builder.withLimit(limit + 1 - keys.size());
+      for (Entity entity : datastore.prepare(older).asList(options)) {
+        keys.add(entity.getKey());
+      }
+    }
+
+    boolean more = keys.size() > limit;
+    if (more) {
+      keys.remove(limit);
+    }
+    Map<Key, Entity> entities = datastore.get(keys);
+    List<Task> tasks = new ArrayList<>(keys.size());
+    for (Key key : keys) {
+      // Skip a task deleted since the query
+      Entity entity = entities.get(key);
+      if (entity != null) {
+        tasks.add(new Task(key.getId(), (String) entity.getProperty("title"),
+            (long) entity.getProperty("timestamp")));
+      }
+    }
+
+    String nextCursor = null;
+    if (more && !tasks.isEmpty()) {
+      nextCursor = TaskCursor.after(tasks.get(tasks.size() - 1)).toString();
+    }
+    return new TaskPage(tasks, nextCursor);
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.sps.data.BulkTaskResults;
+import com.google.sps.data.RecentTasks;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that deletes many tasks at once from a JSON array of ids, with one Datastore delete
+ * per chunk of 500 keys instead of one per task. Returns the outcome for every id, in order;
+ * deleting a task that does not exist succeeds, as with DeleteTaskServlet.
+ *
+ * <p>A chunk whose delete times out may be partly applied, so its ids are reported as unknown
+ * rather than failed. Retrying them is safe, since deleting a missing task succeeds.
+ */
+@WebServlet("/bulk-delete-tasks")
+public class BulkDeleteTasksServlet extends HttpServlet {
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Long[] ids;
+    try {
+      ids = gson.fromJson(request.getReader(), Long[].class);
+    } catch (JsonParseException | NumberFormatException e) {
+      ids = null;
+    }
+    if (ids == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a JSON array of ids");
+      return;
+    }
+    if (ids.length > BulkNewTasksServlet.MAX_TASKS) {
+      response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "At most " + BulkNewTasksServlet.MAX_TASKS + " tasks per request");
+      return;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    BulkTaskResults results = new BulkTaskResults(ids.length);
+    List<Key> keys = new ArrayList<>(Math.min(BulkNewTasksServlet.CHUNK_SIZE, ids.length));
+
+    for (int start = 0; start < ids.length; start += BulkNewTasksServlet.CHUNK_SIZE) {
+      int end = Math.min(start + BulkNewTasksServlet.CHUNK_SIZE, ids.length);
+      keys.clear();
+      for (int i = start; i < end; i++) {
+        if (ids[i] != null && ids[i] > 0) {
+          keys.add(KeyFactory.createKey("Task", ids[i]));
+        }
+      }
+
+      String error = null;
+      boolean timedOut = false;
+      try {
+        if (!keys.isEmpty()) {
+          datastore.delete(keys);
+        }
+      } catch (DatastoreTimeoutException e) {
+        error = "Datastore delete timed out; the task may have been deleted: " + e.getMessage();
+        timedOut = true;
+      } catch (DatastoreFailureException e) {
+        error = "Datastore delete failed: " + e.getMessage();
+      }
+
+      for (int i = start; i < end; i++) {
+        if (ids[i] == null || ids[i] <= 0) {
+          results.failed(ids[i], null, "Invalid id");
+        } else if (timedOut) {
+          results.unknown(ids[i], null, error);
+        } else if (error != null) {
+          results.failed(ids[i], null, error);
+        } else {
+          results.succeeded(ids[i], null);
+          RecentTasks.getInstance().remove(ids[i]);
+        }
+      }
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(results));
+  }
+}
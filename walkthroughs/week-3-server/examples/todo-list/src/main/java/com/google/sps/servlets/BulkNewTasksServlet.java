@@ -0,0 +1,138 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.sps.data.BulkTaskResults;
+import com.google.sps.data.RecentTasks;
+import com.google.sps.data.Task;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that creates many tasks at once from a JSON array of titles, writing them with one
+ * Datastore put per chunk of 500 (the batch limit) instead of one per task. Returns the id or
+ * error of every title, in order; a failed chunk does not stop the following ones.
+ *
+ * <p>The put is not transactional, so a chunk that times out may be partly stored. Its titles
+ * are reported as unknown rather than failed, with no id: retrying them can create duplicates,
+ * so a client should check the task list first.
+ */
+@WebServlet("/bulk-new-tasks")
+public class BulkNewTasksServlet extends HttpServlet {
+
+  static final int CHUNK_SIZE = 500;
+  static final int MAX_TASKS = 10_000;
+  // Datastore rejects String properties longer than this
+  private static final int MAX_TITLE_BYTES = 1500;
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String[] titles;
+    try {
+      titles = gson.fromJson(request.getReader(), String[].class);
+    } catch (JsonParseException e) {
+      titles = null;
+    }
+    if (titles == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a JSON array of titles");
+      return;
+    }
+    if (titles.length > MAX_TASKS) {
+      response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "At most " + MAX_TASKS + " tasks per request");
+      return;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    BulkTaskResults results = new BulkTaskResults(titles.length);
+    long timestamp = System.currentTimeMillis();
+    List<Entity> entities = new ArrayList<>(Math.min(CHUNK_SIZE, titles.length));
+    String[] invalid = new String[titles.length];
+    for (int i = 0; i < titles.length; i++) {
+      invalid[i] = validate(titles[i]);
+    }
+
+    for (int start = 0; start < titles.length; start += CHUNK_SIZE) {
+      int end = Math.min(start + CHUNK_SIZE, titles.length);
+      entities.clear();
+      for (int i = start; i < end; i++) {
+        if (invalid[i] == null) {
+          Entity taskEntity = new Entity("Task");
+          taskEntity.setProperty("title", titles[i]);
+          taskEntity.setProperty("timestamp", timestamp);
+          entities.add(taskEntity);
+        }
+      }
+
+      List<Key> keys = null;
+      String error = null;
+      boolean timedOut = false;
+      try {
+        keys = entities.isEmpty() ? new ArrayList<>() : datastore.put(entities);
+      } catch (DatastoreTimeoutException e) {
+        error = "Datastore write timed out; the task may have been created: " + e.getMessage();
+        timedOut = true;
+      } catch (DatastoreFailureException e) {
+        error = "Datastore write failed: " + e.getMessage();
+      }
+
+      int stored = 0;
+      for (int i = start; i < end; i++) {
+        if (invalid[i] != null) {
+          results.failed(null, titles[i], invalid[i]);
+        } else if (timedOut) {
+          results.unknown(null, titles[i], error);
+        } else if (keys == null) {
+          results.failed(null, titles[i], error);
+        } else {
+          long id = keys.get(stored++).getId();
+          results.succeeded(id, titles[i]);
+          RecentTasks.getInstance().add(new Task(id, titles[i], timestamp));
+        }
+      }
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(results));
+  }
+
+  /** Returns why a title cannot be stored, or null if it can. */
+  private static String validate(String title) {
+    if (title == null || title.trim().isEmpty()) {
+      return "Title is empty";
+    }
+    if (title.length() > MAX_TITLE_BYTES / 3
+        && title.getBytes(StandardCharsets.UTF_8).length > MAX_TITLE_BYTES) {
+      return "Title is longer than " + MAX_TITLE_BYTES + " bytes";
+    }
+    return null;
+  }
+}
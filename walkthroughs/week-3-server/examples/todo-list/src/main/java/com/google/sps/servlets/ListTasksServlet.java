@@ -14,46 +14,68 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.gson.Gson;
-import com.google.sps.data.Task;
+import com.google.sps.data.RecentTasks;
+import com.google.sps.data.TaskCursor;
+import com.google.sps.data.TaskPage;
+import com.google.sps.data.TaskQuery;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for listing tasks. */
+/**
+ * Servlet responsible for listing tasks, newest first, one page at a time. Returns the tasks
+ * and the cursor of the next page; pass it back as ?cursor= to get that page. Pages among the
+ * newest tasks come from memory, older ones from keys-only Datastore queries.
+ */
 @WebServlet("/list-tasks")
 public class ListTasksServlet extends HttpServlet {
 
-  @Override
-  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Task").addSort("timestamp", SortDirection.DESCENDING);
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
+  private static final int DEFAULT_LIMIT = 20;
 
-    List<Task> tasks = new ArrayList<>();
-    for (Entity entity : results.asIterable()) {
-      long id = entity.getKey().getId();
-      String title = (String) entity.getProperty("title");
-      long timestamp = (long) entity.getProperty("timestamp");
+  private final Gson gson = new Gson();
 
-      Task task = new Task(id, title, timestamp);
-      tasks.add(task);
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    TaskCursor after = null;
+    String cursor = request.getParameter("cursor");
+    if (cursor != null && !cursor.isEmpty()) {
+      try {
+        after = TaskCursor.parse(cursor);
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+    }
+    int limit = parseLimit(request.getParameter("limit"));
+    if (limit < 0) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "limit must be between 1 and " + RecentTasks.CAPACITY);
+      return;
     }
 
-    Gson gson = new Gson();
+    TaskPage page = RecentTasks.getInstance().page(after, limit);
+    if (page == null) {
+      page = TaskQuery.page(DatastoreServiceFactory.getDatastoreService(), after, limit);
+    }
 
     response.setContentType("application/json;");
-    response.getWriter().println(gson.toJson(tasks));
+    response.getWriter().println(gson.toJson(page));
+  }
+
+  /** Returns the page size, or -1 if the parameter is invalid. */
+  private static int parseLimit(String value) {
+    if (value == null || value.isEmpty()) {
+      return DEFAULT_LIMIT;
+    }
+    try {
+      int limit = Integer.parseInt(value);
+      return limit < 1 || limit > RecentTasks.CAPACITY ? -1 : limit;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
   }
 }
@@ -12,13 +12,25 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches tasks from the server and adds them to the DOM. */
-function loadTasks() {
-  fetch('/list-tasks').then(response => response.json()).then((tasks) => {
+/** The cursor of the next page of tasks, or null once every task is shown. */
+let nextCursor = null;
+
+/**
+ * Fetches a page of tasks from the server and adds them to the DOM. Loads the
+ * first page, or the next one if more is true.
+ */
+function loadTasks(more) {
+  let url = '/list-tasks';
+  if (more && nextCursor) {
+    url += '?cursor=' + encodeURIComponent(nextCursor);
+  }
+  fetch(url).then(response => response.json()).then((page) => {
     const taskListElement = document.getElementById('task-list');
-    tasks.forEach((task) => {
+    page.tasks.forEach((task) => {
       taskListElement.appendChild(createTaskElement(task));
-    })
+    });
+    nextCursor = page.nextCursor || null;
+    document.getElementById('more-tasks').hidden = !nextCursor;
   });
 }
 
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/** A message posted to the shoutbox. */
+public final class Message {
+
+  private final String email;
+  private final String text;
+  private final long timestamp;
+
+  public Message(String email, String text, long timestamp) {
+    this.email = email;
+    this.text = text;
+    this.timestamp = timestamp;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /** Appends the message as an HTML list item, escaped so it is a single line. */
+  public void appendHtml(StringBuilder html) {
+    html.append("<li>");
+    appendEscaped(html, email);
+    html.append(": ");
+    appendEscaped(html, text);
+    html.append("</li>");
+  }
+
+  private static void appendEscaped(StringBuilder html, String value) {
+    if (value == null) {
+      html.append("null");
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '<':
+          html.append("&lt;");
+          break;
+        case '>':
+          html.append("&gt;");
+          break;
+        case '&':
+          html.append("&amp;");
+          break;
+        case '"':
+          html.append("&quot;");
+          break;
+        case '\'':
+          html.append("&#39;");
+          break;
+        case '\n':
+          html.append("&#10;");
+          break;
+        case '\r':
+          html.append("&#13;");
+          break;
+        default:
+          html.append(c);
+      }
+    }
+  }
+}
@@ -0,0 +1,223 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The newest shoutbox messages in a fixed-size ring buffer, with the rendered message list
+ * cached until the next message. Loaded from Datastore on first use (only the newest
+ * messages) and reloaded every minute to pick up messages posted to other instances; the
+ * servlet adds its own posts as they are stored, waking up any stream waiting for them. The
+ * reload query runs without holding the lock, so readers keep using the old messages meanwhile.
+ */
+public final class RecentMessages {
+
+  /** The most messages kept and shown. */
+  public static final int CAPACITY = 100;
+
+  private static final long MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final RecentMessages instance = new RecentMessages(CAPACITY);
+
+  // ring[(start + i) % ring.length] is the i-th oldest message; guarded by this
+  private final Message[] ring;
+  private int start;
+  private int size;
+
+  private boolean loaded;
+  private long loadedAt;
+  // Whether a thread is running the reload query, so others keep serving the old messages
+  private boolean loading;
+  private long lastTimestamp;
+  // The rendered <ul> of the messages, or null after a change
+  private String html;
+
+  RecentMessages(int capacity) {
+    ring = new Message[capacity];
+  }
+
+  public static RecentMessages getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the timestamp to store a new message with: the current time, or just after the
+   * newest message (or timestamp handed out) if that is later, so timestamps are unique on
+   * this instance. Other instances hand out their own, so two shouts can share a timestamp.
+   */
+  public long nextTimestamp() {
+    loadIfStale();
+    synchronized (this) {
+      long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+      if (size > 0) {
+        timestamp = Math.max(timestamp, newest().getTimestamp() + 1);
+      }
+      lastTimestamp = timestamp;
+      return timestamp;
+    }
+  }
+
+  /**
+   * Adds a message that has just been stored, evicting the oldest if the buffer is full
+   * @param message     the new message
+   */
+  public void add(Message message) {
+    loadIfStale();
+    synchronized (this) {
+      append(message);
+      html = null;
+      notifyAll();
+    }
+  }
+
+  /** Returns the newest messages, newest first, as an HTML list. */
+  public String html() {
+    loadIfStale();
+    synchronized (this) {
+      if (html == null) {
+        StringBuilder list = new StringBuilder(64 * (size + 1));
+        list.append("<ul id=\"messages\">\n");
+        for (int i = size - 1; i >= 0; i--) {
+          get(i).appendHtml(list);
+          list.append('\n');
+        }
+        list.append("</ul>\n");
+        html = list.toString();
+      }
+      return html;
+    }
+  }
+
+  /** Returns the timestamp of the newest message, or 0 if there are none. */
+  public long newestTimestamp() {
+    loadIfStale();
+    synchronized (this) {
+      return size == 0 ? 0 : newest().getTimestamp();
+    }
+  }
+
+  /**
+   * Waits until there are messages newer than a timestamp and returns them, oldest first
+   * @param timestamp   the timestamp of the newest message the caller has
+   * @param timeoutMillis   how long to wait; an empty list is returned if nothing arrives
+   */
+  public List<Message> awaitNewerThan(long timestamp, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (true) {
+      loadIfStale();
+      synchronized (this) {
+        List<Message> messages = newerThan(timestamp);
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (!messages.isEmpty() || remaining <= 0) {
+          return messages;
+        }
+        // Wake up in time for the next reload, which may bring messages from other instances.
+        // A reload already running wakes every waiter when it finishes.
+        long waitMillis = remaining;
+        if (!loading) {
+          long untilStale =
+              TimeUnit.NANOSECONDS.toMillis(loadedAt + MAX_AGE_NANOS - System.nanoTime());
+          waitMillis = Math.max(1, Math.min(remaining, untilStale));
+        }
+        wait(waitMillis);
+      }
+    }
+  }
+
+  private List<Message> newerThan(long timestamp) {
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if (get(i).getTimestamp() > timestamp) {
+        messages.add(get(i));
+      }
+    }
+    return messages;
+  }
+
+  /**
+   * Reloads the newest messages if they are more than a minute old. The query runs outside the
+   * lock; only the first load makes callers wait for it.
+   */
+  private void loadIfStale() {
+    synchronized (this) {
+      if (loaded && (loading || System.nanoTime() - loadedAt <= MAX_AGE_NANOS)) {
+        return;
+      }
+      loading = true;
+    }
+    List<Entity> newest;
+    try {
+      Query query = new Query("Message").addSort("timestamp", SortDirection.DESCENDING);
+      newest = DatastoreServiceFactory.getDatastoreService().prepare(query)
+          .asList(FetchOptions.Builder.withLimit(ring.length));
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        loading = false;
+        // Waiters skipped their reload wake-up for this one; let them retry
+        notifyAll();
+      }
+      throw e;
+    }
+
+    synchronized (this) {
+      // Keep messages added while the query ran, which it may not have seen
+      List<Message> added = newerThan(newest.isEmpty()
+          ? Long.MIN_VALUE : (long) newest.get(0).getProperty("timestamp"));
+      start = 0;
+      size = 0;
+      for (int i = newest.size() - 1; i >= 0; i--) {
+        Entity entity = newest.get(i);
+        append(new Message((String) entity.getProperty("email"),
+            (String) entity.getProperty("text"), (long) entity.getProperty("timestamp")));
+      }
+      for (Message message : added) {
+        append(message);
+      }
+      html = null;
+      loaded = true;
+      loading = false;
+      loadedAt = System.nanoTime();
+      // Messages posted to other instances may have arrived
+      notifyAll();
+    }
+  }
+
+  private void append(Message message) {
+    if (size < ring.length) {
+      ring[(start + size) % ring.length] = message;
+      size++;
+    } else {
+      ring[start] = message;
+      start = (start + 1) % ring.length;
+    }
+  }
+
+  private Message get(int index) {
+    return ring[(start + index) % ring.length];
+  }
+
+  private Message newest() {
+    return get(size - 1);
+  }
+}
@@ -17,11 +17,10 @@ package com.google.sps.servlets;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.Message;
+import com.google.sps.data.RecentMessages;
 import java.io.IOException;
 import java.io.PrintWriter;
 import javax.servlet.annotation.WebServlet;
@@ -29,6 +28,10 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Servlet that shows the newest shoutbox messages (from memory, rendered once per new message)
+ * and stores new ones. The page listens to /shoutbox-stream for shouts posted after it loaded.
+ */
 @WebServlet("/shoutbox")
 public class ShoutboxServlet extends HttpServlet {
 
@@ -53,17 +56,24 @@ public class ShoutboxServlet extends HttpServlet {
       out.println("<p>Login <a href=\"" + loginUrl + "\">here</a>.</p>");
     }
 
-    // Everybody can see the messages
-    out.println("<ul>");
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Message").addSort("timestamp", SortDirection.DESCENDING);
-    PreparedQuery results = datastore.prepare(query);
-    for (Entity entity : results.asIterable()) {
-      String text = (String) entity.getProperty("text");
-      String email = (String) entity.getProperty("email");
-      out.println("<li>" + email + ": " + text + "</li>");
-    }
-    out.println("</ul>");
+    // Everybody can see the messages. Taking the timestamp first means a shout arriving in
+    // between is shown twice rather than missed.
+    RecentMessages messages = RecentMessages.getInstance();
+    long newestTimestamp = messages.newestTimestamp();
+    out.print(messages.html());
+
+    // New shouts are added to the top of the list as they arrive
+    out.println("<script>");
+    out.println("const source = new EventSource('/shoutbox-stream?since=" + newestTimestamp
+        + "');");
+    out.println("source.addEventListener('shout', (event) => {");
+    out.println("  const list = document.getElementById('messages');");
+    out.println("  list.insertAdjacentHTML('afterbegin', event.data);");
+    out.println("  while (list.children.length > " + RecentMessages.CAPACITY + ") {");
+    out.println("    list.lastElementChild.remove();");
+    out.println("  }");
+    out.println("});");
+    out.println("</script>");
   }
 
   @Override
@@ -79,13 +89,15 @@ public class ShoutboxServlet extends HttpServlet {
 
     String text = request.getParameter("text");
     String email = userService.getCurrentUser().getEmail();
+    long timestamp = RecentMessages.getInstance().nextTimestamp();
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     Entity messageEntity = new Entity("Message");
     messageEntity.setProperty("text", text);
     messageEntity.setProperty("email", email);
-    messageEntity.setProperty("timestamp", System.currentTimeMillis());
+    messageEntity.setProperty("timestamp", timestamp);
     datastore.put(messageEntity);
+    RecentMessages.getInstance().add(new Message(email, text, timestamp));
 
     // Redirect to /shoutbox. The request will be routed to the doGet() function above.
     response.sendRedirect("/shoutbox");
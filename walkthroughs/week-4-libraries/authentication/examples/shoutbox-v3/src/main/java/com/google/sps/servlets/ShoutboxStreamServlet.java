@@ -0,0 +1,91 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.Message;
+import com.google.sps.data.RecentMessages;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Server-sent events stream of new shouts, each a "shout" event whose data is the message's
+ * HTML list item and whose id is its timestamp. A request waits up to 25 seconds for shouts
+ * newer than the Last-Event-ID header (or ?since=) and ends once it has sent some, and the
+ * browser's EventSource reconnects. Ending each response keeps shouts prompt on servers that
+ * buffer responses, and keeps requests well inside App Engine's request deadline.
+ *
+ * <p>Resuming is best effort. Timestamps are only unique per instance and shouts from other
+ * instances arrive with the next reload, so a shout posted elsewhere with a timestamp at or
+ * before the last event id is not streamed; it shows up when the page is reloaded.
+ */
+@WebServlet("/shoutbox-stream")
+public class ShoutboxStreamServlet extends HttpServlet {
+
+  private static final long WAIT_MILLIS = 25_000;
+  private static final int RECONNECT_MILLIS = 500;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    RecentMessages messages = RecentMessages.getInstance();
+    long since = parseTimestamp(request.getHeader("Last-Event-ID"));
+    if (since < 0) {
+      since = parseTimestamp(request.getParameter("since"));
+    }
+    if (since < 0) {
+      since = messages.newestTimestamp();
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = response.getWriter();
+    out.print("retry: " + RECONNECT_MILLIS + "\n\n");
+
+    List<Message> shouts;
+    try {
+      shouts = messages.awaitNewerThan(since, WAIT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    StringBuilder event = new StringBuilder();
+    for (Message shout : shouts) {
+      event.setLength(0);
+      event.append("id: ").append(shout.getTimestamp()).append("\nevent: shout\ndata: ");
+      shout.appendHtml(event);
+      event.append("\n\n");
+      out.print(event);
+    }
+    out.flush();
+  }
+
+  /** Returns a timestamp parameter, or -1 if it is missing or invalid. */
+  private static long parseTimestamp(String value) {
+    if (value == null || value.isEmpty()) {
+      return -1;
+    }
+    try {
+      long timestamp = Long.parseLong(value);
+      return timestamp < 0 ? -1 : timestamp;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Arrays;
+
+/** Bigfoot sightings per year, stored column-wise in primitive arrays (in file order). */
+public final class BigfootSightings {
+
+  private final int[] years;
+  private final int[] sightings;
+
+  private BigfootSightings(int[] years, int[] sightings) {
+    this.years = years;
+    this.sightings = sightings;
+  }
+
+  /**
+   * Reads "year,sightings" rows into the columns
+   * @param csv     the CSV data, positioned before the first row
+   * @throws NumberFormatException if a row is not two integers
+   */
+  public static BigfootSightings parse(CsvReader csv) {
+    int[] years = new int[128];
+    int[] sightings = new int[128];
+    int size = 0;
+
+    while (csv.nextRow()) {
+      if (size == years.length) {
+        years = Arrays.copyOf(years, size * 2);
+        sightings = Arrays.copyOf(sightings, size * 2);
+      }
+      years[size] = csv.nextInt();
+      sightings[size] = csv.nextInt();
+      size++;
+    }
+    return new BigfootSightings(Arrays.copyOf(years, size), Arrays.copyOf(sightings, size));
+  }
+
+  public int size() {
+    return years.length;
+  }
+
+  public int year(int index) {
+    return years[index];
+  }
+
+  public int sightings(int index) {
+    return sightings[index];
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Sightings per year in a year-indexed array with prefix sums, so the total over any range of
+ * years (and therefore decade, moving-window and cumulative rollups) is one subtraction.
+ * Years missing from the data count as zero sightings.
+ */
+public final class SightingsTimeSeries {
+
+  private final int firstYear;
+  private final int[] sightings;
+  // totals[i] is the number of sightings before firstYear + i
+  private final long[] totals;
+
+  /** @param columns   the parsed CSV rows (in any order; repeated years are added up) */
+  public SightingsTimeSeries(BigfootSightings columns) {
+    int first = Integer.MAX_VALUE;
+    int last = Integer.MIN_VALUE;
+    for (int i = 0; i < columns.size(); i++) {
+      first = Math.min(first, columns.year(i));
+      last = Math.max(last, columns.year(i));
+    }
+    if (columns.size() == 0) {
+      first = 0;
+      last = -1;
+    }
+
+    firstYear = first;
+    sightings = new int[last - first + 1];
+    for (int i = 0; i < columns.size(); i++) {
+      sightings[columns.year(i) - first] += columns.sightings(i);
+    }
+    totals = new long[sightings.length + 1];
+    for (int i = 0; i < sightings.length; i++) {
+      totals[i + 1] = totals[i] + sightings[i];
+    }
+  }
+
+  public int firstYear() {
+    return firstYear;
+  }
+
+  public int lastYear() {
+    return firstYear + sightings.length - 1;
+  }
+
+  /** Returns the sightings in one year (zero outside the data) */
+  public int sightings(int year) {
+    int index = year - firstYear;
+    return index < 0 || index >= sightings.length ? 0 : sightings[index];
+  }
+
+  /**
+   * Returns the sightings from one year to another, both inclusive
+   * @param from    the first year of the range
+   * @param to      the last year of the range
+   */
+  public long total(int from, int to) {
+    if (from > to) {
+      return 0;
+    }
+    return totalBefore(to + 1) - totalBefore(from);
+  }
+
+  /** Returns every sighting up to and including a year */
+  public long cumulative(int year) {
+    return totalBefore(year + 1);
+  }
+
+  /**
+   * Returns the sightings in the window of years ending with a year
+   * @param year    the last year of the window
+   * @param window  the number of years in the window
+   */
+  public long movingTotal(int year, int window) {
+    return total(year - window + 1, year);
+  }
+
+  /** Sightings before a year, clamping years outside the data to its ends */
+  private long totalBefore(int year) {
+    int index = Math.max(0, Math.min(year - firstYear, sightings.length));
+    return totals[index];
+  }
+}
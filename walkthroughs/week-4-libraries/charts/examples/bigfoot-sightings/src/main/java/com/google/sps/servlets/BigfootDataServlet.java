@@ -14,42 +14,133 @@
 
 package com.google.sps.servlets;
 
-import com.google.gson.Gson;
+import com.google.sps.data.BigfootSightings;
+import com.google.sps.data.CsvReader;
+import com.google.sps.data.SightingsTimeSeries;
+import java.io.File;
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Scanner;
+import java.io.InputStream;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}] */
+/**
+ * Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}. Optional parameters:
+ * from and to limit the years returned, and rollup=decade|cumulative|moving (with window=N
+ * years for moving) returns per-decade, running or trailing-window totals instead.
+ */
 @WebServlet("/bigfoot-data")
 public class BigfootDataServlet extends HttpServlet {
 
-  private LinkedHashMap<Integer, Integer> bigfootSightings = new LinkedHashMap<>();
+  private static final int DEFAULT_WINDOW = 5;
 
-  @Override
-  public void init() {
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream(
-        "/WEB-INF/bigfoot-sightings-by-year.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
-
-      Integer year = Integer.valueOf(cells[0]);
-      Integer sightings = Integer.valueOf(cells[1]);
+  private SightingsTimeSeries bigfootSightings;
+  // The whole series is what the chart asks for, so it is rendered once
+  private String allSightingsJson;
 
-      bigfootSightings.put(year, sightings);
+  @Override
+  public void init() throws ServletException {
+    try {
+      bigfootSightings = new SightingsTimeSeries(
+          BigfootSightings.parse(openCsv("/WEB-INF/bigfoot-sightings-by-year.csv")));
+    } catch (IOException | NumberFormatException e) {
+      throw new ServletException("Could not load bigfoot data", e);
     }
-    scanner.close();
+    allSightingsJson = render(
+        null, bigfootSightings.firstYear(), bigfootSightings.lastYear(), DEFAULT_WINDOW);
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String from = request.getParameter("from");
+    String to = request.getParameter("to");
+    String rollup = request.getParameter("rollup");
+    String window = request.getParameter("window");
+
+    String json;
+    if (from == null && to == null && rollup == null) {
+      json = allSightingsJson;
+    } else {
+      int fromYear;
+      int toYear;
+      int windowYears;
+      try {
+        fromYear = from == null ? bigfootSightings.firstYear() : Integer.parseInt(from);
+        toYear = to == null ? bigfootSightings.lastYear() : Integer.parseInt(to);
+        windowYears = window == null ? DEFAULT_WINDOW : Integer.parseInt(window);
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "from, to and window are years");
+        return;
+      }
+      if (rollup != null && !rollup.equals("decade") && !rollup.equals("cumulative")
+          && !rollup.equals("moving")) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "rollup must be decade, cumulative or moving");
+        return;
+      }
+      if (windowYears < 1) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "window must be at least 1");
+        return;
+      }
+      // Years outside the data have no sightings, so there is nothing to list for them
+      fromYear = Math.max(fromYear, bigfootSightings.firstYear());
+      toYear = Math.min(toYear, bigfootSightings.lastYear());
+      json = render(rollup, fromYear, toYear, windowYears);
+    }
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(bigfootSightings);
     response.getWriter().println(json);
   }
+
+  /**
+   * Renders one value per year (or per decade) of the range as a JSON object
+   * @param rollup  null for the sightings of each year, or decade, cumulative or moving
+   * @param from    the first year of the range
+   * @param to      the last year of the range
+   * @param window  the number of years in each moving total
+   */
+  private String render(String rollup, int from, int to, int window) {
+    StringBuilder json = new StringBuilder();
+    json.append('{');
+    if ("decade".equals(rollup)) {
+      for (int decade = Math.floorDiv(from, 10) * 10; decade <= to; decade += 10) {
+        long total = bigfootSightings.total(Math.max(decade, from), Math.min(decade + 9, to));
+        appendEntry(json, decade, total);
+      }
+    } else {
+      for (int year = from; year <= to; year++) {
+        long value;
+        if ("cumulative".equals(rollup)) {
+          value = bigfootSightings.cumulative(year);
+        } else if ("moving".equals(rollup)) {
+          value = bigfootSightings.movingTotal(year, window);
+        } else {
+          value = bigfootSightings.sightings(year);
+        }
+        appendEntry(json, year, value);
+      }
+    }
+    json.append('}');
+    return json.toString();
+  }
+
+  private static void appendEntry(StringBuilder json, int key, long value) {
+    if (json.length() > 1) {
+      json.append(',');
+    }
+    json.append('"').append(key).append("\":").append(value);
+  }
+
+  /** Memory-maps a WEB-INF resource, or reads it into memory when it is not a plain file */
+  private CsvReader openCsv(String path) throws IOException {
+    String realPath = getServletContext().getRealPath(path);
+    if (realPath != null) {
+      return CsvReader.map(new File(realPath));
+    }
+    try (InputStream in = getServletContext().getResourceAsStream(path)) {
+      return CsvReader.read(in);
+    }
+  }
 }
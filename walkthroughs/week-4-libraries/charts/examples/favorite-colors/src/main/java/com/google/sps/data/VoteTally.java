@@ -0,0 +1,182 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Vote counts per choice. Votes land in per-choice LongAdders (no lock, no racy
+ * read-modify-write) and are periodically checkpointed into one Datastore entity per choice,
+ * so totals survive restarts and include the votes checkpointed by other instances.
+ */
+public final class VoteTally {
+
+  private static final String KIND = "ColorVote";
+  private static final int MAX_RETRIES = 3;
+
+  // Votes received on this instance since the last checkpoint
+  private final ConcurrentMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+  // Totals stored in Datastore as of the last checkpoint (never mutated once published)
+  private volatile Map<String, Long> persisted = Collections.emptyMap();
+  // Snapshots hold the read lock; a checkpoint holds the write lock while it publishes new
+  // totals and removes the checkpointed votes from pending, so no snapshot sees only one half
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Counts one vote
+   * @param choice  the option voted for
+   */
+  public void vote(String choice) {
+    pending.computeIfAbsent(choice, key -> new LongAdder()).increment();
+  }
+
+  /**
+   * Checks whether a choice has received any votes (stored or pending)
+   * @param choice  the option to look up
+   */
+  public boolean contains(String choice) {
+    return persisted.containsKey(choice) || pending.containsKey(choice);
+  }
+
+  /** Returns the number of distinct choices seen so far */
+  public int size() {
+    Map<String, Long> totals = persisted;
+    int extra = 0;
+    for (String choice : pending.keySet()) {
+      if (!totals.containsKey(choice)) {
+        extra++;
+      }
+    }
+    return totals.size() + extra;
+  }
+
+  /**
+   * Returns a consistent copy of the totals (stored votes plus votes not yet checkpointed),
+   * sorted by choice so repeated snapshots serialize identically.
+   */
+  public Map<String, Long> snapshot() {
+    lock.readLock().lock();
+    try {
+      Map<String, Long> totals = new TreeMap<>(persisted);
+      for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+        long votes = entry.getValue().sum();
+        if (votes > 0) {
+          totals.merge(entry.getKey(), votes, Long::sum);
+        }
+      }
+      return totals;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the pending votes to Datastore and picks up the totals stored by other instances.
+   * Votes that could not be written stay pending for the next checkpoint.
+   */
+  public synchronized void checkpoint() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<String, Long> checkpointed = new HashMap<>();
+    Map<String, Long> totals = new HashMap<>(persisted);
+    RuntimeException failure = null;
+
+    for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+      // Not sumThenReset(): on JDK 8 it can drop votes that race with the reset. Votes
+      // counted after sum() stay pending.
+      long delta = entry.getValue().sum();
+      if (delta == 0) {
+        continue;
+      }
+      try {
+        totals.put(entry.getKey(), addVotes(datastore, entry.getKey(), delta));
+        checkpointed.put(entry.getKey(), delta);
+      } catch (RuntimeException e) {
+        // Publish what was written, so those votes are not written twice
+        failure = e;
+        break;
+      }
+    }
+
+    if (failure == null) {
+      // Totals only grow, so a stale (eventually consistent) result never lowers one
+      try {
+        for (Entity entity : datastore.prepare(new Query(KIND)).asIterable()) {
+          totals.merge(entity.getKey().getName(), (long) entity.getProperty("votes"), Math::max);
+        }
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+
+    lock.writeLock().lock();
+    try {
+      persisted = Collections.unmodifiableMap(totals);
+      for (Map.Entry<String, Long> entry : checkpointed.entrySet()) {
+        pending.get(entry.getKey()).add(-entry.getValue());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Adds votes to a choice's entity and returns its new stored total */
+  private long addVotes(DatastoreService datastore, String choice, long delta) {
+    Key key = KeyFactory.createKey(KIND, choice);
+    for (int attempt = 0; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity entity;
+        try {
+          entity = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          entity = new Entity(key);
+          entity.setProperty("votes", 0L);
+        }
+        entity.setProperty("votes", (long) entity.getProperty("votes") + delta);
+        datastore.put(transaction, entity);
+        transaction.commit();
+        return (long) entity.getProperty("votes");
+      } catch (ConcurrentModificationException e) {
+        if (attempt + 1 >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+}
@@ -15,10 +15,9 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
+import com.google.sps.data.VoteTally;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -28,22 +27,75 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/color-data")
 public class ColorDataServlet extends HttpServlet {
 
-  private Map<String, Integer> colorVotes = new HashMap<>();
+  // The chart JSON is rebuilt at most this often, however many clients poll it
+  private static final long SNAPSHOT_MILLIS = 500;
+  // Votes are written to Datastore at most this often
+  private static final long CHECKPOINT_MILLIS = 10_000;
+  // Guards against arbitrary form values growing the tally without bound
+  private static final int MAX_COLORS = 100;
+
+  private final VoteTally colorVotes = new VoteTally();
+  private final Gson gson = new Gson();
+
+  private volatile String cachedJson;
+  private final AtomicLong nextSnapshot = new AtomicLong(0);
+  // The first request loads the totals stored by earlier instances
+  private final AtomicLong nextCheckpoint = new AtomicLong(0);
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    maybeCheckpoint();
+
+    long now = System.currentTimeMillis();
+    long due = nextSnapshot.get();
+    String json = cachedJson;
+    if (json == null
+        || (now >= due && nextSnapshot.compareAndSet(due, now + SNAPSHOT_MILLIS))) {
+      json = gson.toJson(colorVotes.snapshot());
+      cachedJson = json;
+    }
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(colorVotes);
     response.getWriter().println(json);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String color = request.getParameter("color");
-    int currentVotes = colorVotes.containsKey(color) ? colorVotes.get(color) : 0;
-    colorVotes.put(color, currentVotes + 1);
+    if (color == null || color.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing color");
+      return;
+    }
+    if (colorVotes.size() >= MAX_COLORS && !colorVotes.contains(color)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown color");
+      return;
+    }
+    colorVotes.vote(color);
+    maybeCheckpoint();
 
     response.sendRedirect("/index.html");
   }
+
+  @Override
+  public void destroy() {
+    try {
+      colorVotes.checkpoint();
+    } catch (RuntimeException e) {
+      log("Could not checkpoint votes on shutdown", e);
+    }
+  }
+
+  /** Checkpoints the tally if the interval has passed (only one request does the work) */
+  private void maybeCheckpoint() {
+    long now = System.currentTimeMillis();
+    long due = nextCheckpoint.get();
+    if (now >= due && nextCheckpoint.compareAndSet(due, now + CHECKPOINT_MILLIS)) {
+      try {
+        colorVotes.checkpoint();
+        cachedJson = null;
+      } catch (RuntimeException e) {
+        log("Could not checkpoint votes", e);
+      }
+    }
+  }
 }
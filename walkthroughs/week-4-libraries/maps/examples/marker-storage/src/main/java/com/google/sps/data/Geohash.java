@@ -0,0 +1,140 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash encoding (base32, longitude bit first). Points that share a geohash prefix lie in the
+ * same cell, so a cell's markers are one lexicographic range of the indexed geohash property.
+ */
+public final class Geohash {
+
+  private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+  private Geohash() {}
+
+  /**
+   * Encodes a point as a geohash
+   * @param lat         latitude in degrees
+   * @param lng         longitude in degrees
+   * @param precision   number of base32 characters (9 is roughly 5 meters)
+   */
+  public static String encode(double lat, double lng, int precision) {
+    double minLat = -90;
+    double maxLat = 90;
+    double minLng = -180;
+    double maxLng = 180;
+    boolean lngBit = true;
+
+    char[] hash = new char[precision];
+    for (int i = 0; i < precision; i++) {
+      int value = 0;
+      for (int bit = 0; bit < 5; bit++) {
+        value <<= 1;
+        if (lngBit) {
+          double mid = (minLng + maxLng) / 2;
+          if (lng >= mid) {
+            value |= 1;
+            minLng = mid;
+          } else {
+            maxLng = mid;
+          }
+        } else {
+          double mid = (minLat + maxLat) / 2;
+          if (lat >= mid) {
+            value |= 1;
+            minLat = mid;
+          } else {
+            maxLat = mid;
+          }
+        }
+        lngBit = !lngBit;
+      }
+      hash[i] = BASE32[value];
+    }
+    return new String(hash);
+  }
+
+  /**
+   * Returns the geohash cells covering a box, at the finest precision that needs no more than
+   * maxCells cells. A box whose west edge is east of its east edge crosses the antimeridian.
+   * @param south       southern latitude of the box
+   * @param west        western longitude of the box
+   * @param north       northern latitude of the box
+   * @param east        eastern longitude of the box
+   * @param maxPrecision    the longest prefix worth querying
+   * @param maxCells    the most cells (i.e. range queries) the caller is willing to issue
+   */
+  public static List<String> covering(double south, double west, double north, double east,
+      int maxPrecision, int maxCells) {
+    for (int precision = maxPrecision; precision > 1; precision--) {
+      if (countCells(south, west, north, east, precision) <= maxCells) {
+        return cells(south, west, north, east, precision);
+      }
+    }
+    return cells(south, west, north, east, 1);
+  }
+
+  private static long countCells(double south, double west, double north, double east,
+      int precision) {
+    if (west > east) {
+      return countCells(south, west, north, 180, precision)
+          + countCells(south, -180, north, east, precision);
+    }
+    double cellHeight = cellHeight(precision);
+    double cellWidth = cellWidth(precision);
+    long rows = index(north, -90, cellHeight, 180) - index(south, -90, cellHeight, 180) + 1;
+    long columns = index(east, -180, cellWidth, 360) - index(west, -180, cellWidth, 360) + 1;
+    return rows * columns;
+  }
+
+  private static List<String> cells(double south, double west, double north, double east,
+      int precision) {
+    List<String> cells = new ArrayList<>();
+    if (west > east) {
+      cells.addAll(cells(south, west, north, 180, precision));
+      cells.addAll(cells(south, -180, north, east, precision));
+      return cells;
+    }
+    double cellHeight = cellHeight(precision);
+    double cellWidth = cellWidth(precision);
+    long lastRow = index(north, -90, cellHeight, 180);
+    long lastColumn = index(east, -180, cellWidth, 360);
+    for (long row = index(south, -90, cellHeight, 180); row <= lastRow; row++) {
+      for (long column = index(west, -180, cellWidth, 360); column <= lastColumn; column++) {
+        // Encode each cell's center so floating point edges cannot land in a neighbour
+        cells.add(encode(-90 + (row + 0.5) * cellHeight, -180 + (column + 0.5) * cellWidth,
+            precision));
+      }
+    }
+    return cells;
+  }
+
+  /** Cell row/column of a coordinate, clamped to the grid */
+  private static long index(double value, double origin, double cellSize, double span) {
+    long last = Math.round(span / cellSize) - 1;
+    return Math.max(0, Math.min(last, (long) Math.floor((value - origin) / cellSize)));
+  }
+
+  private static double cellHeight(int precision) {
+    return 180.0 / (1L << (5 * precision / 2));
+  }
+
+  private static double cellWidth(int precision) {
+    return 360.0 / (1L << ((5 * precision + 1) / 2));
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the markers in recently viewed geohash cells. Cells are evicted when a
+ * marker is stored inside them; entries also expire so markers stored through other instances
+ * show up after at most TTL_MILLIS.
+ */
+public final class MarkerCellCache {
+
+  private static final long TTL_MILLIS = 30_000;
+
+  private final Map<String, CachedCell> cells;
+
+  /** @param maxCells   the most cells kept in memory (least recently used are dropped) */
+  public MarkerCellCache(int maxCells) {
+    cells = new LinkedHashMap<String, CachedCell>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedCell> eldest) {
+        return size() > maxCells;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached markers of a cell, or null if the cell is not cached or has expired
+   * @param cell    the geohash prefix of the cell
+   */
+  public synchronized List<Marker> get(String cell) {
+    CachedCell cached = cells.get(cell);
+    if (cached == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - cached.loadedAt > TTL_MILLIS) {
+      cells.remove(cell);
+      return null;
+    }
+    return cached.markers;
+  }
+
+  /**
+   * Caches the markers loaded for a cell
+   * @param cell        the geohash prefix of the cell
+   * @param markers     every marker in the cell (must not be modified afterwards)
+   */
+  public synchronized void put(String cell, List<Marker> markers) {
+    cells.put(cell, new CachedCell(markers, System.currentTimeMillis()));
+  }
+
+  /**
+   * Evicts every cached cell containing a point, i.e. every prefix of its geohash
+   * @param geohash     the full geohash of a newly stored marker
+   */
+  public synchronized void invalidate(String geohash) {
+    for (int length = 1; length <= geohash.length(); length++) {
+      cells.remove(geohash.substring(0, length));
+    }
+  }
+
+  private static final class CachedCell {
+
+    private final List<Marker> markers;
+    private final long loadedAt;
+
+    CachedCell(List<Marker> markers, long loadedAt) {
+      this.markers = markers;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
@@ -17,13 +17,23 @@ package com.google.sps.servlets;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.sps.data.Geohash;
 import com.google.sps.data.Marker;
+import com.google.sps.data.MarkerCellCache;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -31,16 +41,54 @@ import javax.servlet.http.HttpServletResponse;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 
-/** Handles fetching and saving markers data. */
+/**
+ * Handles fetching and saving markers data. Markers are stored with a geohash so a GET only
+ * reads the geohash cells covering the requested viewport (?bbox=south,west,north,east).
+ */
 @WebServlet("/markers")
 public class MarkerServlet extends HttpServlet {
 
-  /** Responds with a JSON array containing marker data. */
+  // Stored precision: about 5 meters, far finer than any cell that is queried
+  private static final int GEOHASH_PRECISION = 9;
+  // Cells are at most ~150m wide and a viewport is covered by at most this many range queries
+  private static final int MAX_CELL_PRECISION = 7;
+  private static final int MAX_CELLS_PER_VIEWPORT = 16;
+  // Caps the markers read from one cell when zoomed far out over a dense area
+  private static final int MAX_MARKERS_PER_CELL = 500;
+  // Written once every Marker stored before geohashes existed has been given one
+  private static final Key BACKFILL_MARKER = KeyFactory.createKey("MarkerState", "geohash");
+
+  private final MarkerCellCache cache = new MarkerCellCache(4096);
+  private volatile boolean backfilled = false;
+
+  /** Responds with a JSON array containing the markers inside the requested viewport. */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    double south = -90;
+    double west = -180;
+    double north = 90;
+    double east = 180;
+    String bbox = request.getParameter("bbox");
+    if (bbox != null) {
+      String[] parts = bbox.split(",");
+      try {
+        if (parts.length != 4) {
+          throw new NumberFormatException(bbox);
+        }
+        south = Double.parseDouble(parts[0]);
+        west = Double.parseDouble(parts[1]);
+        north = Double.parseDouble(parts[2]);
+        east = Double.parseDouble(parts[3]);
+      } catch (NumberFormatException e) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "bbox must be south,west,north,east");
+        return;
+      }
+    }
+
     response.setContentType("application/json");
 
-    Collection<Marker> markers = getMarkers();
+    Collection<Marker> markers = getMarkers(south, west, north, east);
     Gson gson = new Gson();
     String json = gson.toJson(markers);
 
@@ -58,33 +106,106 @@ public class MarkerServlet extends HttpServlet {
     storeMarker(marker);
   }
 
-  /** Fetches markers from Datastore. */
-  private Collection<Marker> getMarkers() {
+  /** Fetches the markers inside a box from the covering geohash cells (cached or Datastore). */
+  private Collection<Marker> getMarkers(double south, double west, double north, double east) {
+    ensureBackfilled();
+
     Collection<Marker> markers = new ArrayList<>();
+    for (String cell : Geohash.covering(
+        south, west, north, east, MAX_CELL_PRECISION, MAX_CELLS_PER_VIEWPORT)) {
+      for (Marker marker : getCellMarkers(cell)) {
+        // Cells overhang the viewport, so drop what is outside it
+        double lng = marker.getLng();
+        boolean inLng = west <= east ? lng >= west && lng <= east : lng >= west || lng <= east;
+        if (inLng && marker.getLat() >= south && marker.getLat() <= north) {
+          markers.add(marker);
+        }
+      }
+    }
+    return markers;
+  }
+
+  /** Returns the markers of one geohash cell, reading its geohash range on a cache miss. */
+  private List<Marker> getCellMarkers(String cell) {
+    List<Marker> markers = cache.get(cell);
+    if (markers != null) {
+      return markers;
+    }
 
+    markers = new ArrayList<>();
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Marker");
+    Query query = new Query("Marker").setFilter(CompositeFilterOperator.and(
+        FilterOperator.GREATER_THAN_OR_EQUAL.of("geohash", cell),
+        FilterOperator.LESS_THAN.of("geohash", cell + "\uffff")));
     PreparedQuery results = datastore.prepare(query);
 
-    for (Entity entity : results.asIterable()) {
-      double lat = (double) entity.getProperty("lat");
-      double lng = (double) entity.getProperty("lng");
-      String content = (String) entity.getProperty("content");
-
-      Marker marker = new Marker(lat, lng, content);
-      markers.add(marker);
+    FetchOptions options = FetchOptions.Builder.withLimit(MAX_MARKERS_PER_CELL);
+    for (Entity entity : results.asIterable(options)) {
+      markers.add(toMarker(entity));
     }
+    markers = Collections.unmodifiableList(markers);
+    cache.put(cell, markers);
     return markers;
   }
 
   /** Stores a marker in Datastore. */
   public void storeMarker(Marker marker) {
+    String geohash = Geohash.encode(marker.getLat(), marker.getLng(), GEOHASH_PRECISION);
+
     Entity markerEntity = new Entity("Marker");
     markerEntity.setProperty("lat", marker.getLat());
     markerEntity.setProperty("lng", marker.getLng());
     markerEntity.setProperty("content", marker.getContent());
+    markerEntity.setProperty("geohash", geohash);
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     datastore.put(markerEntity);
+    cache.invalidate(geohash);
+  }
+
+  private static Marker toMarker(Entity entity) {
+    double lat = (double) entity.getProperty("lat");
+    double lng = (double) entity.getProperty("lng");
+    String content = (String) entity.getProperty("content");
+    return new Marker(lat, lng, content);
+  }
+
+  /**
+   * Adds a geohash to markers stored before this servlet indexed them. This is the only full
+   * scan of the Marker kind and it only runs until the backfill marker entity is written.
+   */
+  private synchronized void ensureBackfilled() {
+    if (backfilled) {
+      return;
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      datastore.get(BACKFILL_MARKER);
+      backfilled = true;
+      return;
+    } catch (EntityNotFoundException e) {
+      // First read ever: fall through and index the existing markers
+    }
+
+    List<Entity> updated = new ArrayList<>();
+    for (Entity entity : datastore.prepare(new Query("Marker")).asIterable()) {
+      if (!entity.hasProperty("geohash")) {
+        double lat = (double) entity.getProperty("lat");
+        double lng = (double) entity.getProperty("lng");
+        entity.setProperty("geohash", Geohash.encode(lat, lng, GEOHASH_PRECISION));
+        updated.add(entity);
+      }
+      // Datastore batch writes are limited to 500 entities
+      if (updated.size() == 500) {
+        datastore.put(updated);
+        updated.clear();
+      }
+    }
+    if (!updated.isEmpty()) {
+      datastore.put(updated);
+    }
+
+    datastore.put(new Entity(BACKFILL_MARKER));
+    backfilled = true;
   }
 }
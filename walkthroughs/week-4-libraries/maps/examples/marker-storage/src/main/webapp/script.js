@@ -17,6 +17,9 @@ let map;
 /* Editable marker that displays when a user clicks in the map. */
 let editMarker;
 
+/* Markers fetched for the current viewport, removed when the viewport changes. */
+let displayedMarkers = [];
+
 /** Creates a map that allows users to add markers. */
 function createMap() {
   map = new google.maps.Map(
@@ -29,12 +32,17 @@ function createMap() {
     createMarkerForEdit(event.latLng.lat(), event.latLng.lng());
   });
 
-  fetchMarkers();
+  // Only the markers inside the visible area are fetched, so refetch after
+  // every pan or zoom.
+  map.addListener('idle', fetchMarkers);
 }
 
-/** Fetches markers from the backend and adds them to the map. */
+/** Fetches the markers in the visible area from the backend and adds them to the map. */
 function fetchMarkers() {
-  fetch('/markers').then(response => response.json()).then((markers) => {
+  const bbox = map.getBounds().toUrlValue();
+  fetch('/markers?bbox=' + bbox).then(response => response.json()).then((markers) => {
+    displayedMarkers.forEach(marker => marker.setMap(null));
+    displayedMarkers = [];
     markers.forEach(
         (marker) => {
             createMarkerForDisplay(marker.lat, marker.lng, marker.content)});
@@ -45,6 +53,7 @@ function fetchMarkers() {
 function createMarkerForDisplay(lat, lng, content) {
   const marker =
       new google.maps.Marker({position: {lat: lat, lng: lng}, map: map});
+  displayedMarkers.push(marker);
 
   const infoWindow = new google.maps.InfoWindow({content: content});
   marker.addListener('click', () => {
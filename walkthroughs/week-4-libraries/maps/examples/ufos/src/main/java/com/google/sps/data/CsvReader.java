@@ -0,0 +1,239 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward-only reader over comma separated numbers held in a byte buffer (typically a
+ * memory-mapped file). Fields are parsed straight from the bytes, so reading a row allocates
+ * nothing; callers pull each field into their own primitive column arrays:
+ *
+ * <pre>
+ *   while (csv.nextRow()) {
+ *     lats[size] = csv.nextDouble();
+ *     lngs[size] = csv.nextDouble();
+ *   }
+ * </pre>
+ *
+ * Quoted fields are not supported; the data files are plain numbers.
+ */
+public final class CsvReader {
+
+  // 10^0 .. 10^22 are exactly representable as doubles
+  private static final double[] POWERS_OF_TEN = new double[23];
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final ByteBuffer buffer;
+  private final int limit;
+  // Position of the next unread byte and the end (exclusive) of the current row
+  private int position;
+  private int rowEnd;
+
+  /** @param buffer   the CSV bytes, read from its position to its limit */
+  public CsvReader(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.position = buffer.position();
+    this.limit = buffer.limit();
+    this.rowEnd = position;
+  }
+
+  /**
+   * Memory-maps a file for reading
+   * @param file    the CSV file (it must not change while it is being read)
+   */
+  public static CsvReader map(File file) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      // The mapping stays valid after the channel is closed
+      return new CsvReader(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length()));
+    }
+  }
+
+  /**
+   * Reads a whole stream into memory, for resources that are not plain files
+   * @param in  the CSV data (closed by the caller)
+   */
+  public static CsvReader read(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+    byte[] chunk = new byte[64 * 1024];
+    int read;
+    while ((read = in.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    return new CsvReader(ByteBuffer.wrap(bytes.toByteArray()));
+  }
+
+  /**
+   * Advances to the next non-blank row, skipping whatever is left of the current one
+   * @return false once every row has been read
+   */
+  public boolean nextRow() {
+    position = rowEnd;
+    while (position < limit) {
+      byte b = buffer.get(position);
+      if (b != '\n' && b != '\r') {
+        break;
+      }
+      position++;
+    }
+    if (position >= limit) {
+      return false;
+    }
+    rowEnd = position;
+    while (rowEnd < limit) {
+      byte b = buffer.get(rowEnd);
+      if (b == '\n' || b == '\r') {
+        break;
+      }
+      rowEnd++;
+    }
+    return true;
+  }
+
+  /** Returns whether the current row has another field */
+  public boolean hasNextField() {
+    return position <= rowEnd;
+  }
+
+  /** Skips the next field of the current row */
+  public void skipField() {
+    position = fieldEnd() + 1;
+  }
+
+  /**
+   * Parses the next field of the current row as an int
+   * @throws NumberFormatException if the field is missing or not an integer (it is skipped)
+   */
+  public int nextInt() {
+    int end = fieldEnd();
+    int i = position;
+    boolean negative = i < end && buffer.get(i) == '-';
+    if (negative || (i < end && buffer.get(i) == '+')) {
+      i++;
+    }
+    if (i == end) {
+      throw malformed(end);
+    }
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = buffer.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw malformed(end);
+      }
+      value = value * 10 + digit;
+      if (value > (long) Integer.MAX_VALUE + 1) {
+        throw malformed(end);
+      }
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw malformed(end);
+    }
+    position = end + 1;
+    return (int) value;
+  }
+
+  /**
+   * Parses the next field of the current row as a double. Plain decimals with up to 15
+   * significant digits (i.e. coordinates and counts) are converted exactly from the digits;
+   * anything else falls back to Double.parseDouble, so results always match it.
+   * @throws NumberFormatException if the field is missing or not a number (it is skipped)
+   */
+  public double nextDouble() {
+    int end = fieldEnd();
+    int i = position;
+    boolean negative = i < end && buffer.get(i) == '-';
+    if (negative || (i < end && buffer.get(i) == '+')) {
+      i++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean seenDigit = false;
+    boolean seenPoint = false;
+    boolean fastPath = true;
+    for (; i < end && fastPath; i++) {
+      byte b = buffer.get(i);
+      if (b >= '0' && b <= '9') {
+        seenDigit = true;
+        if (mantissa != 0 || b != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        if (seenPoint) {
+          fractionDigits++;
+        }
+        fastPath = digits <= 15;
+      } else if (b == '.' && !seenPoint) {
+        seenPoint = true;
+      } else {
+        fastPath = false;
+      }
+    }
+
+    double value;
+    if (fastPath && seenDigit && fractionDigits < POWERS_OF_TEN.length) {
+      // Both operands are exact, so the single division is correctly rounded
+      value = mantissa / POWERS_OF_TEN[fractionDigits];
+      value = negative ? -value : value;
+    } else {
+      String field = field(end);
+      position = end + 1;
+      return Double.parseDouble(field);
+    }
+    position = end + 1;
+    return value;
+  }
+
+  /** Index of the comma ending the next field, or the row end for the last field */
+  private int fieldEnd() {
+    if (position > rowEnd) {
+      throw new NumberFormatException("Missing field");
+    }
+    int end = position;
+    while (end < rowEnd && buffer.get(end) != ',') {
+      end++;
+    }
+    return end;
+  }
+
+  private String field(int end) {
+    byte[] bytes = new byte[end - position];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(position + i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  /** Consumes the bad field, so the caller can carry on with the next one */
+  private NumberFormatException malformed(int end) {
+    String field = field(end);
+    position = end + 1;
+    return new NumberFormatException("Not an integer: \"" + field + "\"");
+  }
+}
@@ -0,0 +1,229 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Packed 2-d tree over sighting coordinates. The points are reordered so that the median of
+ * every range [lo, hi) sits at its middle index, splitting on latitude and longitude in turn;
+ * the tree therefore needs no node objects, just the two coordinate arrays.
+ */
+public final class SightingIndex {
+
+  // Cluster cells are a quarter of a 256px map tile, i.e. about 64px on screen
+  private static final int CELLS_PER_TILE = 4;
+  private static final int MAX_ZOOM = 22;
+
+  private final double[] lats;
+  private final double[] lngs;
+
+  /** @param sightings   the points to index (copied, the source is not modified) */
+  public SightingIndex(UfoSightings sightings) {
+    int size = sightings.size();
+    lats = new double[size];
+    lngs = new double[size];
+    for (int i = 0; i < size; i++) {
+      lats[i] = sightings.lat(i);
+      lngs[i] = sightings.lng(i);
+    }
+    build(0, size, true);
+  }
+
+  public int size() {
+    return lats.length;
+  }
+
+  public double lat(int index) {
+    return lats[index];
+  }
+
+  public double lng(int index) {
+    return lngs[index];
+  }
+
+  /**
+   * Visits the index of every point inside the box (edges included). A box whose west edge is
+   * east of its east edge crosses the antimeridian and is searched as two boxes.
+   * @param box       the viewport to search
+   * @param visitor   receives the index of each matching point
+   */
+  public void query(BoundingBox box, IntConsumer visitor) {
+    if (box.west <= box.east) {
+      search(0, lats.length, true, box.south, box.north, box.west, box.east, visitor);
+    } else {
+      search(0, lats.length, true, box.south, box.north, box.west, 180, visitor);
+      search(0, lats.length, true, box.south, box.north, -180, box.east, visitor);
+    }
+  }
+
+  /**
+   * Groups the points inside the box into grid cells sized for the zoom level and returns one
+   * cluster (centroid and count) per non-empty cell.
+   * @param box     the viewport to cluster
+   * @param zoom    the Google Maps zoom level (0 = whole world in one tile)
+   */
+  public Map<Long, Cluster> cluster(BoundingBox box, int zoom) {
+    int level = Math.max(0, Math.min(zoom, MAX_ZOOM));
+    double cellDegrees = 360.0 / ((long) CELLS_PER_TILE << level);
+    long cellsPerRow = (long) Math.ceil(360.0 / cellDegrees) + 1;
+
+    Map<Long, Cluster> clusters = new HashMap<>();
+    query(box, index -> {
+      long row = (long) Math.floor((lats[index] + 90) / cellDegrees);
+      long column = (long) Math.floor((lngs[index] + 180) / cellDegrees);
+      clusters.computeIfAbsent(row * cellsPerRow + column, key -> new Cluster())
+          .add(lats[index], lngs[index]);
+    });
+    return clusters;
+  }
+
+  private void search(int lo, int hi, boolean byLat, double south, double north, double west,
+      double east, IntConsumer visitor) {
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      double lat = lats[mid];
+      double lng = lngs[mid];
+      if (lat >= south && lat <= north && lng >= west && lng <= east) {
+        visitor.accept(mid);
+      }
+
+      double split = byLat ? lat : lng;
+      double min = byLat ? south : west;
+      double max = byLat ? north : east;
+      boolean goLow = min <= split;
+      boolean goHigh = split <= max;
+      if (goLow && goHigh) {
+        search(lo, mid, !byLat, south, north, west, east, visitor);
+        lo = mid + 1;
+      } else if (goLow) {
+        hi = mid;
+      } else if (goHigh) {
+        lo = mid + 1;
+      } else {
+        return;
+      }
+      byLat = !byLat;
+    }
+  }
+
+  /** Arranges [lo, hi) so its median (by the split axis) is at the middle, then recurses */
+  private void build(int lo, int hi, boolean byLat) {
+    if (hi - lo < 2) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, byLat ? lats : lngs);
+    build(lo, mid, !byLat);
+    build(mid + 1, hi, !byLat);
+  }
+
+  /** Quickselect: moves the k-th smallest key of [lo, hi] to index k, partitioning around it */
+  private void select(int lo, int hi, int k, double[] keys) {
+    while (lo < hi) {
+      double pivot = keys[(lo + hi) >>> 1];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (keys[i] < pivot) {
+          i++;
+        }
+        while (keys[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swap(int a, int b) {
+    double lat = lats[a];
+    lats[a] = lats[b];
+    lats[b] = lat;
+    double lng = lngs[a];
+    lngs[a] = lngs[b];
+    lngs[b] = lng;
+  }
+
+  /** A viewport in degrees: south/north latitudes and west/east longitudes */
+  public static final class BoundingBox {
+
+    public static final BoundingBox WORLD = new BoundingBox(-90, -180, 90, 180);
+
+    private final double south;
+    private final double west;
+    private final double north;
+    private final double east;
+
+    public BoundingBox(double south, double west, double north, double east) {
+      this.south = south;
+      this.west = west;
+      this.north = north;
+      this.east = east;
+    }
+
+    /**
+     * Parses "south,west,north,east" (the order of LatLngBounds.toUrlValue)
+     * @param value   the bbox query parameter
+     * @throws IllegalArgumentException if the value is not four numbers
+     */
+    public static BoundingBox parse(String value) {
+      String[] parts = value.split(",");
+      if (parts.length != 4) {
+        throw new IllegalArgumentException("bbox must be south,west,north,east");
+      }
+      return new BoundingBox(
+          Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+          Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+    }
+  }
+
+  /** Running centroid and count of the points in one grid cell */
+  public static final class Cluster {
+
+    private double latSum;
+    private double lngSum;
+    private int count;
+
+    void add(double lat, double lng) {
+      latSum += lat;
+      lngSum += lng;
+      count++;
+    }
+
+    public double getLat() {
+      return latSum / count;
+    }
+
+    public double getLng() {
+      return lngSum / count;
+    }
+
+    public int getCount() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** All UFO sightings stored column-wise in primitive arrays (index i is one sighting). */
+public final class UfoSightings {
+
+  private final double[] lats;
+  private final double[] lngs;
+  private final int size;
+
+  private UfoSightings(double[] lats, double[] lngs, int size) {
+    this.lats = lats;
+    this.lngs = lngs;
+    this.size = size;
+  }
+
+  /**
+   * Reads "lat,lng" rows into the columns; rows that are not two numbers are skipped.
+   * @param csv     the CSV data, positioned before the first row
+   */
+  public static UfoSightings parse(CsvReader csv) {
+    double[] lats = new double[1024];
+    double[] lngs = new double[1024];
+    int size = 0;
+
+    while (csv.nextRow()) {
+      double lat;
+      double lng;
+      try {
+        lat = csv.nextDouble();
+        lng = csv.nextDouble();
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      if (size == lats.length) {
+        lats = Arrays.copyOf(lats, size * 2);
+        lngs = Arrays.copyOf(lngs, size * 2);
+      }
+      lats[size] = lat;
+      lngs[size] = lng;
+      size++;
+    }
+    return new UfoSightings(Arrays.copyOf(lats, size), Arrays.copyOf(lngs, size), size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double lat(int index) {
+    return lats[index];
+  }
+
+  public double lng(int index) {
+    return lngs[index];
+  }
+
+  /** Renders every sighting as a JSON array, e.g. [{"lat":38.4404675,"lng":-122.7144313}] */
+  public byte[] toJson() {
+    // Roughly 40 bytes per sighting
+    StringBuilder json = new StringBuilder(size * 40 + 2);
+    json.append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"lat\":").append(lats[i]).append(",\"lng\":").append(lngs[i]).append('}');
+    }
+    json.append(']');
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -14,45 +14,151 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.data.UfoSighting;
-import com.google.gson.Gson;
+import com.google.sps.data.CsvReader;
+import com.google.sps.data.SightingIndex;
+import com.google.sps.data.SightingIndex.BoundingBox;
+import com.google.sps.data.SightingIndex.Cluster;
+import com.google.sps.data.UfoSightings;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Scanner;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}] */
+/**
+ * Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}]. With
+ * ?bbox=south,west,north,east only the sightings inside the viewport are returned, and with
+ * ?zoom=N they are grouped into clusters, e.g. [{"lat": 38.4, "lng": -122.7, "count": 12}].
+ */
 @WebServlet("/ufo-data")
 public class UfoDataServlet extends HttpServlet {
 
-  private Collection<UfoSighting> ufoSightings;
+  private UfoSightings ufoSightings;
+  private SightingIndex index;
+
+  // The data never changes while the server runs, so the response bodies are rendered once
+  private byte[] json;
+  private byte[] gzippedJson;
 
   @Override
-  public void init() {
-    ufoSightings = new ArrayList<>();
+  public void init() throws ServletException {
+    try {
+      ufoSightings = UfoSightings.parse(openCsv("/WEB-INF/ufo-data.csv"));
+      json = ufoSightings.toJson();
+      gzippedJson = gzip(json);
+      index = new SightingIndex(ufoSightings);
+    } catch (IOException e) {
+      throw new ServletException("Could not load UFO data", e);
+    }
+  }
 
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream("/WEB-INF/ufo-data.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String bbox = request.getParameter("bbox");
+    String zoom = request.getParameter("zoom");
+    if (bbox != null || zoom != null) {
+      doViewportGet(bbox, zoom, response);
+      return;
+    }
 
-      double lat = Double.parseDouble(cells[0]);
-      double lng = Double.parseDouble(cells[1]);
+    byte[] body = json;
+    if (acceptsGzip(request.getHeader("Accept-Encoding"))) {
+      body = gzippedJson;
+      response.setHeader("Content-Encoding", "gzip");
+    }
 
-      ufoSightings.add(new UfoSighting(lat, lng));
+    response.setContentType("application/json; charset=utf-8");
+    response.setHeader("Vary", "Accept-Encoding");
+    response.setHeader("Cache-Control", "public, max-age=3600");
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  /**
+   * Answers a viewport query from the spatial index
+   * @param bbox        "south,west,north,east" in degrees, or null for the whole world
+   * @param zoom        the map zoom level to cluster for, or null to return individual sightings
+   * @param response    the matching sightings or clusters as JSON
+   */
+  private void doViewportGet(String bbox, String zoom, HttpServletResponse response)
+      throws IOException {
+    BoundingBox box;
+    int zoomLevel;
+    try {
+      box = bbox == null ? BoundingBox.WORLD : BoundingBox.parse(bbox);
+      zoomLevel = zoom == null ? -1 : Integer.parseInt(zoom);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid bbox or zoom parameter");
+      return;
+    }
+
+    StringBuilder body = new StringBuilder();
+    body.append('[');
+    if (zoomLevel < 0) {
+      index.query(box, i -> {
+        appendSeparator(body);
+        body.append("{\"lat\":").append(index.lat(i))
+            .append(",\"lng\":").append(index.lng(i)).append('}');
+      });
+    } else {
+      for (Cluster cluster : index.cluster(box, zoomLevel).values()) {
+        appendSeparator(body);
+        body.append("{\"lat\":").append(cluster.getLat())
+            .append(",\"lng\":").append(cluster.getLng())
+            .append(",\"count\":").append(cluster.getCount()).append('}');
+      }
     }
-    scanner.close();
+    body.append(']');
+
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    response.setContentType("application/json; charset=utf-8");
+    response.setHeader("Cache-Control", "public, max-age=3600");
+    response.setContentLength(bytes.length);
+    response.getOutputStream().write(bytes);
   }
 
-  @Override
-  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(ufoSightings);
-    response.getWriter().println(json);
+  private static void appendSeparator(StringBuilder body) {
+    if (body.length() > 1) {
+      body.append(',');
+    }
+  }
+
+  /** Memory-maps a WEB-INF resource, or reads it into memory when it is not a plain file */
+  private CsvReader openCsv(String path) throws IOException {
+    String realPath = getServletContext().getRealPath(path);
+    if (realPath != null) {
+      return CsvReader.map(new File(realPath));
+    }
+    try (InputStream in = getServletContext().getResourceAsStream(path)) {
+      return CsvReader.read(in);
+    }
+  }
+
+  /** Checks whether the Accept-Encoding header allows gzip (and does not refuse it with q=0) */
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.trim().split(";");
+      if (params[0].trim().equalsIgnoreCase("gzip")) {
+        return params.length < 2 || !params[1].trim().matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    }
+    return out.toByteArray();
   }
 }
@@ -12,16 +12,27 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches UFO sightings data from the server and displays it in a map. */
+let markers = [];
+
+/**
+ * Creates the map and, whenever it stops moving, fetches the UFO sightings in the visible area
+ * (clustered by the server for the current zoom level) and displays them.
+ */
 function createUfoSightingsMap() {
-  fetch('/ufo-data').then(response => response.json()).then((ufoSightings) => {
-    const map = new google.maps.Map(
-        document.getElementById('map'),
-        {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
+  const map = new google.maps.Map(
+      document.getElementById('map'),
+      {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
 
-    ufoSightings.forEach((ufoSighting) => {
-      new google.maps.Marker(
-          {position: {lat: ufoSighting.lat, lng: ufoSighting.lng}, map: map});
-    });
+  map.addListener('idle', () => {
+    const bbox = map.getBounds().toUrlValue();
+    fetch('/ufo-data?bbox=' + bbox + '&zoom=' + map.getZoom())
+        .then(response => response.json()).then((clusters) => {
+          markers.forEach(marker => marker.setMap(null));
+          markers = clusters.map(cluster => new google.maps.Marker({
+            position: {lat: cluster.lat, lng: cluster.lng},
+            label: cluster.count > 1 ? String(cluster.count) : null,
+            map: map
+          }));
+        });
   });
 }
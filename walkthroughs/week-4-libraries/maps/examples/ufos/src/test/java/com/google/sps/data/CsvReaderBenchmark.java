@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Scanner;
+
+/**
+ * Compares loading a scaled-up copy of ufo-data.csv the way UfoDataServlet.init used to
+ * (Scanner, String.split and a UfoSighting per row) with CsvReader over a memory-mapped file.
+ * Run after mvn test-compile with:
+ *
+ * <pre>
+ *   java -cp target/classes:target/test-classes com.google.sps.data.CsvReaderBenchmark [copies]
+ * </pre>
+ */
+public final class CsvReaderBenchmark {
+
+  private static final Path SOURCE = Paths.get("src/main/webapp/WEB-INF/ufo-data.csv");
+  private static final int ITERATIONS = 5;
+
+  public static void main(String[] args) throws IOException {
+    int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    byte[] source = Files.readAllBytes(SOURCE);
+    Path scaled = Files.createTempFile("ufo-data", ".csv");
+    scaled.toFile().deleteOnExit();
+    byte[] newline = {'\n'};
+    for (int i = 0; i < copies; i++) {
+      Files.write(scaled, source, StandardOpenOption.APPEND);
+      Files.write(scaled, newline, StandardOpenOption.APPEND);
+    }
+    File file = scaled.toFile();
+    System.out.printf("%d copies, %.1f MB%n", copies, file.length() / 1e6);
+
+    // The first iterations warm up the JIT; report the best of the rest
+    long scannerBest = Long.MAX_VALUE;
+    long csvBest = Long.MAX_VALUE;
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      int rows = loadWithScanner(file);
+      scannerBest = Math.min(scannerBest, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      int columns = UfoSightings.parse(CsvReader.map(file)).size();
+      csvBest = Math.min(csvBest, System.nanoTime() - start);
+
+      if (rows != columns) {
+        throw new IllegalStateException(rows + " rows but " + columns + " parsed");
+      }
+    }
+    System.out.printf("Scanner + split: %6d ms%n", scannerBest / 1_000_000);
+    System.out.printf("CsvReader (mmap): %5d ms%n", csvBest / 1_000_000);
+  }
+
+  private static int loadWithScanner(File file) throws IOException {
+    Collection<UfoSighting> ufoSightings = new ArrayList<>();
+    try (InputStream in = new FileInputStream(file)) {
+      Scanner scanner = new Scanner(in);
+      while (scanner.hasNextLine()) {
+        String line = scanner.nextLine();
+        String[] cells = line.split(",");
+
+        double lat = Double.parseDouble(cells[0]);
+        double lng = Double.parseDouble(cells[1]);
+
+        ufoSightings.add(new UfoSighting(lat, lng));
+      }
+    }
+    return ufoSightings.size();
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper that routes the body through a GzipOutputStream. Content-Length set by the
+ * servlet is ignored (the stream sets it for small bodies) and a strong ETag is weakened once
+ * the body is gzip-encoded, since the encoded bytes differ from the identity representation.
+ */
+final class CompressingResponseWrapper extends HttpServletResponseWrapper
+    implements GzipOutputStream.Target {
+
+  private final HttpServletResponse response;
+  private final GzipOutputStream stream;
+  private PrintWriter writer;
+  private boolean streamUsed = false;
+
+  CompressingResponseWrapper(HttpServletResponse response, DeflaterPool pool, int threshold) {
+    super(response);
+    this.response = response;
+    this.stream = new GzipOutputStream(this, pool, threshold);
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called");
+    }
+    streamUsed = true;
+    return stream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (streamUsed) {
+      throw new IllegalStateException("getOutputStream() has already been called");
+    }
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void setContentLength(int length) {}
+
+  @Override
+  public void setContentLengthLong(long length) {}
+
+  @Override
+  public void setHeader(String name, String value) {
+    if (!"Content-Length".equalsIgnoreCase(name)) {
+      super.setHeader(name, value);
+    }
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    if (!"Content-Length".equalsIgnoreCase(name)) {
+      super.addHeader(name, value);
+    }
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    } else {
+      stream.flush();
+    }
+  }
+
+  @Override
+  public void resetBuffer() {
+    stream.resetBuffer();
+    super.resetBuffer();
+  }
+
+  @Override
+  public void reset() {
+    stream.resetBuffer();
+    super.reset();
+  }
+
+  /** Sends whatever is still buffered; called by the filter once the servlet is done */
+  void finish() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    stream.finish();
+  }
+
+  /** Releases pooled resources without completing the body */
+  void abort() {
+    stream.abort();
+  }
+
+  @Override
+  public ServletOutputStream rawStream() throws IOException {
+    return response.getOutputStream();
+  }
+
+  @Override
+  public boolean startCompression() {
+    if (response.isCommitted() || response.containsHeader("Content-Encoding")) {
+      return false;
+    }
+    response.setHeader("Content-Encoding", "gzip");
+    String etag = response.getHeader("ETag");
+    if (etag != null && !etag.startsWith("W/")) {
+      response.setHeader("ETag", "W/" + etag);
+    }
+    return true;
+  }
+
+  @Override
+  public void setUncompressedLength(int length) {
+    response.setContentLength(length);
+  }
+}
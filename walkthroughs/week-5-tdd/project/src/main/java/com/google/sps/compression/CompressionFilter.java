@@ -0,0 +1,121 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Gzip-compresses JSON responses for clients that accept it. Bodies smaller than the threshold
+ * (init parameter "threshold", in bytes) are sent uncompressed since gzip would not pay off.
+ */
+@WebFilter(urlPatterns = {"/get-events", "/query"})
+public class CompressionFilter implements Filter {
+
+  private static final int DEFAULT_THRESHOLD = 1024;
+  private static final int POOL_SIZE = 32;
+
+  private final DeflaterPool pool = new DeflaterPool(POOL_SIZE, Deflater.DEFAULT_COMPRESSION);
+  private int threshold = DEFAULT_THRESHOLD;
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+    String value = filterConfig.getInitParameter("threshold");
+    if (value != null) {
+      threshold = Integer.parseInt(value);
+    }
+  }
+
+  /**
+   * Wraps the response in a compressing wrapper when the client accepts gzip
+   * @param request     carries the client's Accept-Encoding header
+   * @param response    the response to (maybe) compress
+   * @param chain       the remaining filters and the target servlet
+   */
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+    // Caches must keep encoded and identity responses apart
+    httpResponse.addHeader("Vary", "Accept-Encoding");
+
+    if (!acceptsGzip(httpRequest.getHeader("Accept-Encoding"))) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    CompressingResponseWrapper wrapper =
+        new CompressingResponseWrapper(httpResponse, pool, threshold);
+    boolean completed = false;
+    try {
+      chain.doFilter(request, wrapper);
+      wrapper.finish();
+      completed = true;
+    } finally {
+      if (!completed) {
+        wrapper.abort();
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    pool.close();
+  }
+
+  /**
+   * Checks whether gzip is acceptable, honouring q-values (e.g. "gzip;q=0" or "*;q=0")
+   * @param acceptEncoding  the raw Accept-Encoding header (may be null)
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Boolean wildcard = null;
+    for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+      String[] params = part.trim().split(";");
+      String coding = params[0].trim();
+      boolean acceptable = true;
+      for (int i = 1; i < params.length; i++) {
+        String param = params[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            acceptable = Double.parseDouble(param.substring(2)) > 0;
+          } catch (NumberFormatException e) {
+            acceptable = false;
+          }
+        }
+      }
+      if (coding.equals("gzip") || coding.equals("x-gzip")) {
+        return acceptable;
+      }
+      if (coding.equals("*")) {
+        wildcard = acceptable;
+      }
+    }
+    return wildcard != null && wildcard;
+  }
+}
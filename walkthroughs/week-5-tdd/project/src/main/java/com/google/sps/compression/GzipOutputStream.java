@@ -0,0 +1,213 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * Response stream that buffers the first threshold bytes uncompressed. A body that stays below
+ * the threshold is sent as-is with a Content-Length; a larger one switches to gzip (using a
+ * pooled Deflater) the moment the threshold is crossed and is streamed from then on.
+ */
+final class GzipOutputStream extends ServletOutputStream {
+
+  private static final byte[] GZIP_HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  /** Callbacks into the response: whether it may be compressed and how to mark it */
+  interface Target {
+    ServletOutputStream rawStream() throws IOException;
+
+    /** Returns false if the response must not be compressed (e.g. already encoded) */
+    boolean startCompression();
+
+    void setUncompressedLength(int length);
+  }
+
+  private final Target target;
+  private final DeflaterPool pool;
+  private final byte[] buffer;
+  private int buffered = 0;
+
+  private ServletOutputStream raw;
+  private Deflater deflater;
+  private byte[] deflateBuffer;
+  private CRC32 crc;
+  private boolean passThrough = false;
+  private boolean finished = false;
+
+  GzipOutputStream(Target target, DeflaterPool pool, int threshold) {
+    this.target = target;
+    this.pool = pool;
+    this.buffer = new byte[threshold];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    if (finished) {
+      throw new IOException("Response already finished");
+    }
+    if (deflater == null && !passThrough) {
+      if (buffered + length <= buffer.length) {
+        System.arraycopy(bytes, offset, buffer, buffered, length);
+        buffered += length;
+        return;
+      }
+      begin();
+    }
+    if (passThrough) {
+      raw.write(bytes, offset, length);
+    } else {
+      compress(bytes, offset, length);
+    }
+  }
+
+  /** Pushes compressed data written so far to the client (only once streaming has started) */
+  @Override
+  public void flush() throws IOException {
+    if (passThrough) {
+      raw.flush();
+    } else if (deflater != null) {
+      drain(Deflater.SYNC_FLUSH);
+      raw.flush();
+    }
+  }
+
+  /** Completes the body: sends a small body uncompressed or writes the gzip trailer */
+  void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    if (deflater == null && !passThrough) {
+      if (buffered > 0) {
+        target.setUncompressedLength(buffered);
+        target.rawStream().write(buffer, 0, buffered);
+      }
+      return;
+    }
+    if (passThrough) {
+      return;
+    }
+    try {
+      deflater.finish();
+      while (!deflater.finished()) {
+        int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+        raw.write(deflateBuffer, 0, length);
+      }
+      writeIntLe(raw, (int) crc.getValue());
+      writeIntLe(raw, deflater.getTotalIn());
+    } finally {
+      pool.release(deflater);
+      deflater = null;
+    }
+  }
+
+  /** Returns the Deflater to the pool if the body was abandoned (e.g. the servlet threw) */
+  void abort() {
+    if (deflater != null) {
+      pool.release(deflater);
+      deflater = null;
+    }
+    finished = true;
+  }
+
+  /** Drops anything buffered so far (for response.reset/resetBuffer) */
+  void resetBuffer() {
+    if (deflater != null || passThrough) {
+      throw new IllegalStateException("Response already committed");
+    }
+    buffered = 0;
+  }
+
+  @Override
+  public boolean isReady() {
+    return !passThrough || raw.isReady();
+  }
+
+  /**
+   * Switches to non-blocking output by handing the listener to the raw stream. Async responses
+   * are sent uncompressed, since deflated output cannot follow the raw stream's readiness.
+   */
+  @Override
+  public void setWriteListener(WriteListener writeListener) {
+    if (deflater != null) {
+      throw new IllegalStateException("Response is already being compressed");
+    }
+    try {
+      if (!passThrough) {
+        raw = target.rawStream();
+        passThrough = true;
+        // Still blocking until the listener is set
+        raw.write(buffer, 0, buffered);
+        buffered = 0;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    raw.setWriteListener(writeListener);
+  }
+
+  /** Crosses the threshold: decides between gzip and pass-through and flushes the buffer */
+  private void begin() throws IOException {
+    raw = target.rawStream();
+    if (!target.startCompression()) {
+      passThrough = true;
+      raw.write(buffer, 0, buffered);
+      return;
+    }
+    deflater = pool.borrow();
+    deflateBuffer = new byte[Math.max(buffer.length, 512)];
+    crc = new CRC32();
+    raw.write(GZIP_HEADER);
+    compress(buffer, 0, buffered);
+  }
+
+  private void compress(byte[] bytes, int offset, int length) throws IOException {
+    crc.update(bytes, offset, length);
+    deflater.setInput(bytes, offset, length);
+    while (!deflater.needsInput()) {
+      int produced = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.NO_FLUSH);
+      raw.write(deflateBuffer, 0, produced);
+    }
+  }
+
+  private void drain(int flushMode) throws IOException {
+    int produced;
+    do {
+      produced = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, flushMode);
+      raw.write(deflateBuffer, 0, produced);
+    } while (produced == deflateBuffer.length);
+  }
+
+  private static void writeIntLe(OutputStream out, int value) throws IOException {
+    out.write(value & 0xff);
+    out.write((value >>> 8) & 0xff);
+    out.write((value >>> 16) & 0xff);
+    out.write((value >>> 24) & 0xff);
+  }
+}